@@ -1,3 +1,5 @@
+import org.jetbrains.intellij.platform.gradle.TestFrameworkType
+
 plugins {
     id("org.jetbrains.intellij.platform.module")
     id("java")
@@ -27,8 +29,13 @@ dependencies {
         bundledModule("intellij.platform.vcs.dvcs.impl")
         bundledModule("intellij.platform.vcs.dvcs.impl.shared")
         bundledModule("intellij.platform.vcs.log.impl")
+        testFramework(TestFrameworkType.Platform)
     }
 
     implementation(project(":shared"))
     compileOnly("com.google.code.gson:gson:2.14.0")
+
+    testImplementation("junit:junit:4.13.2")
+    // Needed by the platform test framework when running JUnit 4 tests
+    testImplementation("org.opentest4j:opentest4j:1.3.0")
 }
@@ -0,0 +1,66 @@
+package implementation.compare;
+
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ChangesUtil;
+import implementation.compare.ChangesService.ChangesResult;
+import implementation.compare.ChangesService.RepoChangesResult;
+import model.ChangeIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Merges per-repository results into a single {@link ChangesResult} in one linear pass.
+ * Changes are keyed by file path ({@code ChangesUtil.getFilePath(change).getPath()}); the first change seen for
+ * a path wins, so repositories must be added in their priority order (main repository first).
+ * The result carries a {@link ChangeIndex} built here, off the EDT, and handed over to the model as-is.
+ */
+final class ChangesMerger {
+
+    private final Map<String, Change> merged = new HashMap<>();
+    private final Map<String, Change> scope = new HashMap<>();
+    private final Map<String, Change> local = new HashMap<>();
+
+    void add(RepoChangesResult repoResult) {
+        addAll(merged, repoResult.mergedChanges());
+        addAll(scope, repoResult.scopeChanges());
+        addAll(local, repoResult.localChanges());
+    }
+
+    /**
+     * @param fingerprint {@link CollectionFingerprint} of the state the merged results were collected from
+     */
+    ChangesResult toResult(@Nullable String fingerprint) {
+        return new ChangesResult(ChangeIndex.of(merged, scope, local), fingerprint, false, false);
+    }
+
+    /**
+     * Result carrying only the error sentinel as its merged changes; every path map is empty.
+     */
+    static ChangesResult errorResult() {
+        return new ChangesResult(ChangeIndex.ofMarker(ChangesService.ERROR_STATE), null, false, false);
+    }
+
+    /**
+     * Result telling the caller that the state still matches {@code fingerprint}, so the result it already
+     * applied is current; it carries no changes.
+     */
+    static ChangesResult unchangedResult(@NotNull String fingerprint) {
+        return new ChangesResult(ChangeIndex.EMPTY, fingerprint, true, false);
+    }
+
+    /**
+     * Result telling the caller that its collection was canceled or superseded; it carries no changes.
+     */
+    static ChangesResult supersededResult() {
+        return new ChangesResult(ChangeIndex.EMPTY, null, false, true);
+    }
+
+    private static void addAll(Map<String, Change> target, Iterable<Change> changes) {
+        for (Change change : changes) {
+            target.putIfAbsent(ChangesUtil.getFilePath(change).getPath(), change);
+        }
+    }
+}
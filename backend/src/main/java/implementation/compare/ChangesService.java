@@ -1,36 +1,45 @@
 package implementation.compare;
 
+import com.intellij.concurrency.SensitiveProgressWrapper;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.vcs.FilePath;
-import com.intellij.openapi.vcs.FileStatus;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.changes.Change;
-import com.intellij.openapi.vcs.changes.ChangeListManager;
 import com.intellij.openapi.vcs.changes.ChangesUtil;
-import com.intellij.openapi.vcs.changes.CurrentContentRevision;
-import com.intellij.openapi.vfs.VirtualFile;
-import git4idea.GitCommit;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.vcs.log.Hash;
+import git4idea.GitBranch;
 import git4idea.GitReference;
 import git4idea.GitRevisionNumber;
 import git4idea.actions.GitCompareWithRefAction;
-import git4idea.history.GitHistoryUtils;
 import git4idea.repo.GitRepository;
+import model.ChangeIndex;
 import model.TargetBranchMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import service.GitService;
-import settings.GitScopeSettings;
 import system.Defs;
 import utils.PlatformApiReflection;
 import utils.GitUtil;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -51,13 +60,18 @@ public class ChangesService extends GitCompareWithRefAction implements Disposabl
     public static final Collection<Change> ERROR_STATE = new ErrorStateList();
 
     /**
-     * Container for merged changes, scope changes, and local changes towards HEAD.
+     * Merged changes, scope changes, and local changes towards HEAD of all repositories, indexed by path
+     * (built while merging, see {@link ChangesMerger}).
      *
-     * @param mergedChanges Scope changes + local changes (union of scopeChanges and localChanges)
-     * @param scopeChanges  Scope changes only (from target branch comparison)
-     * @param localChanges  Local changes towards HEAD only
+     * @param index       Merged (scope + local), scope-only and local-only changes with their path lookups
+     * @param fingerprint Fingerprint of the state the result was collected from (null if unknown)
+     * @param unchanged   True if the state still matched the caller's applied fingerprint and nothing was
+     *                    collected; the index is empty then
+     * @param superseded  True if the collection was canceled or superseded by a newer one before it finished;
+     *                    the index is empty and must not be applied
      */
-        public record ChangesResult(Collection<Change> mergedChanges, Collection<Change> scopeChanges, Collection<Change> localChanges) {
+    public record ChangesResult(ChangeIndex index, @Nullable String fingerprint, boolean unchanged,
+                                boolean superseded) {
     }
     private final Project project;
     private final GitService git;
@@ -66,9 +80,33 @@ public class ChangesService extends GitCompareWithRefAction implements Disposabl
     private final AtomicReference<ProgressIndicator> currentIndicator = new AtomicReference<>();
     private final AtomicLong collectionGeneration = new AtomicLong(0);
 
+    // Repositories are collected concurrently; each one mostly waits on its own git process, so the pool is
+    // sized to the cores but capped to keep the number of simultaneous git processes reasonable.
+    private static final int MAX_PARALLEL_REPOSITORIES = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+    private static final long CANCELLATION_POLL_MS = 50;
+    private final ExecutorService repoExecutor =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("GitScopeRepositoryCollector", MAX_PARALLEL_REPOSITORIES);
+    // Scope diffs run on their own pool so repository workers waiting on a shared diff can never starve it
+    private final ExecutorService scopeLayerExecutor =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("GitScopeLayerDiff", MAX_PARALLEL_REPOSITORIES);
+    private final InFlightScopeLayers inFlightLayers = new InFlightScopeLayers(scopeLayerExecutor, CANCELLATION_POLL_MS);
+    // Background warming of inactive tabs: a single thread, so it never competes with the active tab for more
+    // than one git process
+    private final ExecutorService prefetchExecutor =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("GitScopePrefetch", 1);
+    private final AtomicLong prefetchGeneration = new AtomicLong(0);
+    private final AtomicReference<ProgressIndicator> prefetchIndicator = new AtomicReference<>();
+    // Snapshot writes: a single thread, so writes never interleave and dispose() can wait for the last one
+    private static final long SNAPSHOT_SAVE_TIMEOUT_MS = 2000;
+    private final ExecutorService snapshotExecutor =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("GitScopeSnapshot", 1);
+    // Layer keys of the last snapshot written, so unchanged scopes are not rewritten after every collection
+    private volatile Map<String, ScopeLayerCache.Key> savedLayerKeys = Map.of();
+
     public ChangesService(Project project) {
         this.project = project;
         this.git = project.getService(GitService.class);
+        this.snapshotStore = new ScopeSnapshotStore(project);
     }
 
     @NotNull
@@ -85,10 +123,49 @@ public class ChangesService extends GitCompareWithRefAction implements Disposabl
         return branchToCompare;
     }
 
-    // Cache for storing changes per repository (stores RepoChangesResult to preserve scope/local separation)
-    private final Map<String, RepoChangesResult> changesCache = new ConcurrentHashMap<>();
+    // Cache for storing changes per repository (stores RepoChangesResult to preserve scope/local separation).
+    // Entries of inactive tabs are kept warm by prefetch() so switching tabs does not run git.
+    private static final long REPO_RESULT_CACHE_BYTES = 32L * 1024 * 1024;
+    private final RepoResultCache changesCache = new RepoResultCache(REPO_RESULT_CACHE_BYTES);
+    // Committed scope layers keyed by resolved commits, shared by all tabs of the project
+    private static final long SCOPE_LAYER_CACHE_BYTES = 64L * 1024 * 1024;
+    private final ScopeLayerCache scopeLayerCache = new ScopeLayerCache(SCOPE_LAYER_CACHE_BYTES);
+    // Layer last used per repo path + "|" + scope ref; these are persisted for the next IDE start
+    private final Map<String, ScopeLayerCache.Key> lastLayerKeys = new ConcurrentHashMap<>();
+    private final ScopeSnapshotStore snapshotStore;
+    // Commits that scope refs resolved to, per repository; dropped when the repository's refs change
+    private final RefResolutionCache refCache = new RefResolutionCache();
+    private volatile boolean snapshotRestored = false;
+    // Layer key each scope ref used in the previous session, for showing it before it has been verified
+    private volatile Map<String, ScopeLayerCache.Key> restoredLayerKeys = Map.of();
+    // Repositories touched by VFS events since the last changeListUpdateDone
+    private final Set<GitRepository> pendingWorkingTreeRepos = ConcurrentHashMap.newKeySet();
 
     public void collectChangesWithCallback(TargetBranchMap targetBranchByRepo, Consumer<ChangesResult> callBack, boolean checkFs) {
+        collectChangesWithCallback(targetBranchByRepo, callBack, null, checkFs);
+    }
+
+    /**
+     * Like {@link #collectChangesWithCallback(TargetBranchMap, Consumer, boolean)}, additionally reporting the
+     * scope changes parsed so far to {@code partialCallBack} (on a background thread) while git diff is
+     * still running. Partial results never include local changes and are superseded by {@code callBack}.
+     */
+    public void collectChangesWithCallback(TargetBranchMap targetBranchByRepo, Consumer<ChangesResult> callBack,
+                                           @Nullable Consumer<Collection<Change>> partialCallBack, boolean checkFs) {
+        collectChangesWithCallback(targetBranchByRepo, callBack, partialCallBack, checkFs, null);
+    }
+
+    /**
+     * Like {@link #collectChangesWithCallback(TargetBranchMap, Consumer, Consumer, boolean)}. Unless
+     * {@code checkFs} is set, a {@link CollectionFingerprint} is computed first; if it equals
+     * {@code appliedFingerprint} nothing is collected and {@code callBack} receives an
+     * {@link ChangesResult#unchanged() unchanged} result, so the caller can skip its whole update.
+     * {@code callBack} is called exactly once per request (unless the project closes): a collection that is
+     * canceled or superseded by a newer request reports a {@link ChangesResult#superseded() superseded} result.
+     */
+    public void collectChangesWithCallback(TargetBranchMap targetBranchByRepo, Consumer<ChangesResult> callBack,
+                                           @Nullable Consumer<Collection<Change>> partialCallBack, boolean checkFs,
+                                           @Nullable String appliedFingerprint) {
         // Capture the current project reference to ensure consistency
         final Project currentProject = this.project;
         final GitService currentGitService = this.git;
@@ -107,88 +184,53 @@ public class ChangesService extends GitCompareWithRefAction implements Disposabl
                     return;
                 }
 
-                Collection<Change> _changes = new ArrayList<>();
-                Collection<Change> _scopeChanges = new ArrayList<>();
-                Collection<Change> _localChanges = new ArrayList<>();
-                List<String> errorRepos = new ArrayList<>();
-
-                Collection<GitRepository> repositories = currentGitService.getRepositories();
+                ChangesMerger merger = new ChangesMerger();
+                int failedRepos = 0;
 
-                // Clear cache if checkFs is true (force fresh fetch)
-                if (checkFs) {
-                    changesCache.clear();
-                }
+                List<GitRepository> repositories = currentGitService.getRepositories();
 
-                repositories.forEach(repo -> {
-                    if (indicator.isCanceled() || collectionGeneration.get() != gen) return;
-                    try {
-                        String branchToCompare = getBranchToCompare(targetBranchByRepo, repo);
-
-                        // Use repo path + target branch as cache key to ensure different branches don't share cache
-                        String cacheKey = repo.getRoot().getPath() + "|" + branchToCompare;
-
-                        RepoChangesResult repoResult;
-
-                        if (!checkFs && changesCache.containsKey(cacheKey)) {
-                            // Use cached result (includes merged, scope, and local changes)
-                            repoResult = changesCache.get(cacheKey);
-                        } else {
-                            // Fetch fresh changes
-                            repoResult = doCollectChanges(currentProject, repo, branchToCompare);
-
-                            // Cache the complete result (but don't cache error states)
-                            if (!(repoResult.mergedChanges() instanceof ErrorStateList)) {
-                                // Create deep copies to avoid modification issues
-                                RepoChangesResult cachedResult = new RepoChangesResult(
-                                    new ArrayList<>(repoResult.mergedChanges()),
-                                    new ArrayList<>(repoResult.scopeChanges()),
-                                    new ArrayList<>(repoResult.localChanges())
-                                );
-                                changesCache.put(cacheKey, cachedResult);
-                            }
-                        }
+                // One ChangeListManager snapshot for the whole pass, partitioned by repository root
+                LocalChangesSnapshot localSnapshot = new LocalChangesSnapshot(currentProject);
 
-                        if (repoResult.mergedChanges() instanceof ErrorStateList) {
-                            errorRepos.add(repo.getRoot().getPath());
-                            return; // Skip this repo but continue with others
-                        }
-
-                        // Merge merged changes into the collection
-                        for (Change change : repoResult.mergedChanges()) {
-                            if (!_changes.contains(change)) {
-                                _changes.add(change);
-                            }
-                        }
-
-                        // Merge scope changes into the collection
-                        for (Change change : repoResult.scopeChanges()) {
-                            if (!_scopeChanges.contains(change)) {
-                                _scopeChanges.add(change);
-                            }
-                        }
+                // No-op refreshes (focus changes, editor opens, change list updates without net change) stop here
+                String fingerprint = CollectionFingerprint.compute(localSnapshot, repositories,
+                        repo -> getBranchToCompare(targetBranchByRepo, repo),
+                        (repo, ref) -> {
+                            ScopeTarget target = resolveScopeTarget(repo, ref);
+                            return target == null ? null : target.sha();
+                        });
+                if (!checkFs && fingerprint != null && fingerprint.equals(appliedFingerprint)) {
+                    LOG.debug("ChangesService - fingerprint unchanged, skipping collection");
+                    result = ChangesMerger.unchangedResult(fingerprint);
+                    return;
+                }
 
-                        // Merge local changes from the repo result into the collection
-                        for (Change change : repoResult.localChanges()) {
-                            if (!_localChanges.contains(change)) {
-                                _localChanges.add(change);
-                            }
-                        }
-                    } catch (com.intellij.openapi.progress.ProcessCanceledException e) {
-                        throw e;
-                    } catch (Exception e) {
-                        // Catch any unexpected errors from individual repo processing
-                        // This ensures one bad repo doesn't crash the entire operation
-                        LOG.warn("Unexpected error processing repository " + repo.getRoot().getPath(), e);
-                        errorRepos.add(repo.getRoot().getPath());
+                // With checkFs the cached results of this scope are bypassed and replaced (force fresh fetch);
+                // other scopes stay warm. Scope layers survive as well: they are keyed by the target and HEAD
+                // commits, so git only runs again when one of those moved.
+
+                // Results are indexed like the repositories (main repo first) so merging stays deterministic
+                PartialScopeReporter partialReporter =
+                        partialCallBack == null ? null : new PartialScopeReporter(partialCallBack);
+                List<RepoChangesResult> repoResults = collectRepositories(currentProject, repositories,
+                        targetBranchByRepo, checkFs, localSnapshot, partialReporter, indicator, gen);
+
+                for (int i = 0; i < repositories.size(); i++) {
+                    RepoChangesResult repoResult = repoResults.get(i);
+                    if (repoResult == null || repoResult.mergedChanges() instanceof ErrorStateList) {
+                        failedRepos++;
+                        continue; // Skip this repo but continue with others
                     }
-                });
+                    merger.add(repoResult);
+                }
 
                 // Return ERROR_STATE only if ALL repositories failed (e.g. commit hash not found in any repo).
                 // Individual repo failures are expected in multi-repo setups where a commit exists in only one repo.
-                if (!errorRepos.isEmpty() && errorRepos.size() == repositories.size()) {
-                    result = new ChangesResult(ERROR_STATE, new ArrayList<>(), new ArrayList<>());
+                if (failedRepos > 0 && failedRepos == repositories.size()) {
+                    result = ChangesMerger.errorResult();
                 } else {
-                    result = new ChangesResult(_changes, _scopeChanges, _localChanges);
+                    result = merger.toResult(fingerprint);
+                    saveSnapshotInBackground();
                 }
                 } finally {
                     currentIndicator.compareAndSet(indicator, null);
@@ -200,8 +242,18 @@ public class ChangesService extends GitCompareWithRefAction implements Disposabl
                 // Ensure result is accessed only on the UI thread to update the UI component
                 ApplicationManager.getApplication().invokeLater(() -> {
                     // Double-check the project is still valid
-                    if (!currentProject.isDisposed() && callBack != null && this.result != null) {
-                        callBack.accept(this.result);
+                    if (!currentProject.isDisposed() && callBack != null) {
+                        // No result: the collection returned early because a newer one superseded it
+                        callBack.accept(this.result != null ? this.result : ChangesMerger.supersededResult());
+                    }
+                }, ModalityState.defaultModalityState(), __ -> disposing.get());
+            }
+
+            @Override
+            public void onCancel() {
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    if (!currentProject.isDisposed() && callBack != null) {
+                        callBack.accept(ChangesMerger.supersededResult());
                     }
                 }, ModalityState.defaultModalityState(), __ -> disposing.get());
             }
@@ -210,7 +262,7 @@ public class ChangesService extends GitCompareWithRefAction implements Disposabl
             public void onThrowable(@NotNull Throwable error) {
                 ApplicationManager.getApplication().invokeLater(() -> {
                     if (!currentProject.isDisposed() && callBack != null) {
-                        callBack.accept(new ChangesResult(ERROR_STATE, new ArrayList<>(), new ArrayList<>()));
+                        callBack.accept(ChangesMerger.errorResult());
                     }
                 }, ModalityState.defaultModalityState(), __ -> disposing.get());
             }
@@ -219,175 +271,396 @@ public class ChangesService extends GitCompareWithRefAction implements Disposabl
         if (prev != null) {
             prev.cancel();
         }
+        // The active tab always wins over background prefetching
+        cancelPrefetch();
         task.queue();
     }
+
+    /**
+     * Warms {@link #changesCache} for the given scopes (inactive tabs, most important first) in the background,
+     * one repository at a time. Nothing is reported to the UI. Any collection requested through
+     * {@link #collectChangesWithCallback} cancels the prefetch, and a new prefetch replaces a running one.
+     */
+    public void prefetch(@NotNull List<TargetBranchMap> targets) {
+        if (disposing.get() || targets.isEmpty()) return;
+        final long activeGen = collectionGeneration.get();
+        final long gen = prefetchGeneration.incrementAndGet();
+        cancelPrefetchIndicator();
+        try {
+            prefetchExecutor.execute(() -> runPrefetch(targets, activeGen, gen));
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private void runPrefetch(List<TargetBranchMap> targets, long activeGen, long gen) {
+        ProgressIndicator indicator = new EmptyProgressIndicator();
+        prefetchIndicator.set(indicator);
+        try {
+            ProgressManager.getInstance().runProcess(() -> {
+                List<GitRepository> repositories = git.getRepositories();
+                LocalChangesSnapshot localSnapshot = new LocalChangesSnapshot(project);
+                for (TargetBranchMap target : targets) {
+                    for (GitRepository repo : repositories) {
+                        if (isPrefetchSuperseded(indicator, activeGen, gen)) return;
+                        String cacheKey = repo.getRoot().getPath() + "|" + getBranchToCompare(target, repo);
+                        if (!changesCache.contains(cacheKey)) {
+                            collectRepository(project, repo, target, false, localSnapshot, null);
+                        }
+                    }
+                }
+                LOG.debug("ChangesService - prefetched " + targets.size() + " inactive scopes");
+            }, indicator);
+        } catch (ProcessCanceledException e) {
+            LOG.debug("ChangesService - prefetch cancelled");
+        } finally {
+            prefetchIndicator.compareAndSet(indicator, null);
+        }
+    }
+
+    private boolean isPrefetchSuperseded(ProgressIndicator indicator, long activeGen, long gen) {
+        return indicator.isCanceled() || disposing.get()
+                || prefetchGeneration.get() != gen || collectionGeneration.get() != activeGen;
+    }
+
+    private void cancelPrefetch() {
+        prefetchGeneration.incrementAndGet();
+        cancelPrefetchIndicator();
+    }
+
+    private void cancelPrefetchIndicator() {
+        ProgressIndicator running = prefetchIndicator.getAndSet(null);
+        if (running != null) {
+            running.cancel();
+        }
+    }
     
+    /**
+     * Collects every repository, fanning out to {@link #repoExecutor} when there is more than one.
+     * The returned list is index-aligned with {@code repositories}; an entry is null when the repository
+     * failed unexpectedly. Throws {@link ProcessCanceledException} when the collection was cancelled or
+     * superseded by a newer generation.
+     */
+    private List<RepoChangesResult> collectRepositories(Project project,
+                                                        List<GitRepository> repositories,
+                                                        TargetBranchMap targetBranchByRepo,
+                                                        boolean checkFs,
+                                                        LocalChangesSnapshot localSnapshot,
+                                                        @Nullable PartialScopeReporter partialReporter,
+                                                        ProgressIndicator indicator,
+                                                        long gen) {
+        List<RepoChangesResult> results = new ArrayList<>(repositories.size());
+        if (repositories.size() <= 1) {
+            for (GitRepository repo : repositories) {
+                checkCollectionCanceled(indicator, gen);
+                results.add(collectRepository(project, repo, targetBranchByRepo, checkFs, localSnapshot, partialReporter));
+            }
+            return results;
+        }
+
+        List<Future<RepoChangesResult>> futures = new ArrayList<>(repositories.size());
+        try {
+            for (GitRepository repo : repositories) {
+                // Each worker gets its own wrapper so git commands started there observe the task's cancellation
+                futures.add(repoExecutor.submit(() -> ProgressManager.getInstance().runProcess(() -> {
+                    checkCollectionCanceled(indicator, gen);
+                    return collectRepository(project, repo, targetBranchByRepo, checkFs, localSnapshot, partialReporter);
+                }, new SensitiveProgressWrapper(indicator))));
+            }
+            for (Future<RepoChangesResult> future : futures) {
+                results.add(awaitRepository(future, indicator, gen));
+            }
+        } finally {
+            for (Future<RepoChangesResult> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return results;
+    }
+
+    private RepoChangesResult awaitRepository(Future<RepoChangesResult> future, ProgressIndicator indicator, long gen) {
+        while (true) {
+            checkCollectionCanceled(indicator, gen);
+            try {
+                return future.get(CANCELLATION_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // poll again so cancellation is noticed while long git commands are running
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException(e);
+            } catch (CancellationException e) {
+                throw new ProcessCanceledException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ProcessCanceledException pce) {
+                    throw pce;
+                }
+                LOG.warn("Unexpected error collecting repository changes", e.getCause());
+                return null;
+            }
+        }
+    }
+
+    private void checkCollectionCanceled(ProgressIndicator indicator, long gen) {
+        if (indicator.isCanceled() || disposing.get() || collectionGeneration.get() != gen) {
+            throw new ProcessCanceledException();
+        }
+    }
+
+    /**
+     * Returns the (possibly cached) changes of a single repository, or null when the repository failed
+     * unexpectedly. Safe to call concurrently for different repositories.
+     */
+    private RepoChangesResult collectRepository(Project project, GitRepository repo,
+                                                TargetBranchMap targetBranchByRepo, boolean checkFs,
+                                                LocalChangesSnapshot localSnapshot,
+                                                @Nullable PartialScopeReporter partialReporter) {
+        try {
+            String branchToCompare = getBranchToCompare(targetBranchByRepo, repo);
+
+            // Use repo path + target branch as cache key to ensure different branches don't share cache
+            String cacheKey = repo.getRoot().getPath() + "|" + branchToCompare;
+
+            RepoChangesResult cached = checkFs ? null : changesCache.get(cacheKey);
+            if (cached != null) {
+                // Use cached result (includes merged, scope, and local changes)
+                return cached;
+            }
+
+            // Fetch fresh changes
+            RepoChangesResult repoResult = doCollectChanges(project, repo, branchToCompare, localSnapshot,
+                    partialReporter == null ? null : partialReporter.forRepository(repo.getRoot().getPath()));
+
+            // Cache the complete result (but don't cache error states)
+            if (!(repoResult.mergedChanges() instanceof ErrorStateList)) {
+                // Create deep copies to avoid modification issues
+                RepoChangesResult cachedResult = new RepoChangesResult(
+                    new ArrayList<>(repoResult.mergedChanges()),
+                    new ArrayList<>(repoResult.scopeChanges()),
+                    new ArrayList<>(repoResult.localChanges())
+                );
+                changesCache.put(cacheKey, cachedResult);
+            }
+            return repoResult;
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (Exception e) {
+            // Catch any unexpected errors from individual repo processing
+            // This ensures one bad repo doesn't crash the entire operation
+            LOG.warn("Unexpected error processing repository " + repo.getRoot().getPath(), e);
+            return null;
+        }
+    }
+
     @Override
     public void dispose() {
         // Set disposing flag to prevent queued callbacks from executing
         disposing.set(true);
+        repoExecutor.shutdownNow();
+        cancelPrefetch();
+        prefetchExecutor.shutdownNow();
+        inFlightLayers.cancelAll();
+        scopeLayerExecutor.shutdownNow();
+
+        // Persist the scopes of the last collection so the next start can skip git diff for them. Collections
+        // already write it in the background; this only catches a newer one, with a bounded wait since dispose
+        // may run on the EDT.
+        saveSnapshotOnDispose();
 
         // Clear cache to release memory
         clearCache();
+        pendingWorkingTreeRepos.clear();
     }
 
     // Method to clear cache when needed
     public void clearCache() {
         changesCache.clear();
+        scopeLayerCache.clear();
+        lastLayerKeys.clear();
+        restoredLayerKeys = Map.of();
+        refCache.clear();
     }
 
     // Method to clear cache for specific repo (clears all entries for this repo across all branches)
     public void clearCache(GitRepository repo) {
         String repoPath = repo.getRoot().getPath();
         // Remove all cache entries that start with this repo path
-        changesCache.keySet().removeIf(key -> key.startsWith(repoPath + "|"));
+        changesCache.removeRepository(repoPath);
     }
 
     /**
-     * Filters local changes to include only those within the specified repository path.
-     * Also optionally excludes changes that are already present in an existing collection.
+     * Drops the cached results of the given repositories only. Repositories that are not listed keep
+     * serving their cached {@link RepoChangesResult} on the next {@code checkFs == false} collection.
+     * Listed repositories rebuild their local layer but reuse their scope layer unless HEAD or the target moved.
+     */
+    public void invalidate(@NotNull Collection<GitRepository> repositories) {
+        for (GitRepository repo : repositories) {
+            clearCache(repo);
+        }
+    }
+
+    /**
+     * Forgets how refs of the given repository resolved. Call when its HEAD, branches, tags or remotes
+     * may have moved; working-tree changes keep the resolved refs.
+     */
+    public void invalidateRefs(@NotNull GitRepository repository) {
+        refCache.invalidate(repository.getRoot().getPath());
+    }
+
+    /**
+     * Invalidates repositories touched by working-tree (VFS) events and remembers them until the next
+     * {@code changeListUpdateDone}. VFS events arrive before ChangeListManager has refreshed its state,
+     * so these roots must be invalidated once more when the change list update completes.
+     */
+    public void markWorkingTreeDirty(@NotNull Collection<GitRepository> repositories) {
+        invalidate(repositories);
+        pendingWorkingTreeRepos.addAll(repositories);
+    }
+
+    /**
+     * Returns and forgets the repositories recorded by {@link #markWorkingTreeDirty}.
+     */
+    @NotNull
+    public Set<GitRepository> drainWorkingTreeDirty() {
+        Set<GitRepository> drained = new HashSet<>();
+        for (Iterator<GitRepository> it = pendingWorkingTreeRepos.iterator(); it.hasNext(); ) {
+            drained.add(it.next());
+            it.remove();
+        }
+        return drained;
+    }
+
+    /**
+     * Excludes local changes whose path is already present in the scope layer.
      *
-     * @param localChanges All local changes from the project
-     * @param repoPath Repository root path to filter by
-     * @param existingChanges Optional collection of existing changes to exclude duplicates (null to include all)
+     * @param localChanges Local changes of the repository
+     * @param existingPaths Paths of existing changes to exclude as duplicates
      * @return Filtered collection of changes
      */
-    private Collection<Change> filterLocalChanges(Collection<Change> localChanges, String repoPath, Collection<Change> existingChanges) {
+    private Collection<Change> filterLocalChanges(Collection<Change> localChanges, Set<String> existingPaths) {
         Collection<Change> filtered = new ArrayList<>();
-        boolean showDeletedFiles = GitScopeSettings.getInstance().isShowDeletedFiles();
-
         for (Change change : localChanges) {
-            FilePath changePath = ChangesUtil.getFilePath(change);
-            String changePathStr = changePath.getPath();
-
-            if (!showDeletedFiles && change.getType() == Change.Type.DELETED) {
-                continue;
+            if (!existingPaths.contains(ChangesUtil.getFilePath(change).getPath())) {
+                filtered.add(change);
             }
+        }
+        return filtered;
+    }
 
-            // Check if change belongs to this repository
-            if (!changePathStr.startsWith(repoPath)) {
-                continue;
-            }
+    /**
+     * Result container for changes collection that separates scope, local, and merged changes.
+     *
+     * @param mergedChanges Scope changes + local changes (union)
+     * @param scopeChanges Scope changes only (from target branch comparison)
+     * @param localChanges Local changes only (towards HEAD, filtered by repository)
+     */
+    public record RepoChangesResult(Collection<Change> mergedChanges, Collection<Change> scopeChanges, Collection<Change> localChanges) {}
 
-            // If existingChanges provided, skip duplicates
-            if (existingChanges != null && !existingChanges.isEmpty()) {
-                boolean isDuplicate = false;
-                for (Change existing : existingChanges) {
-                    String existingPath = ChangesUtil.getFilePath(existing).getPath();
-                    if (changePathStr.equals(existingPath)) {
-                        isDuplicate = true;
-                        break;
-                    }
-                }
-                if (isDuplicate) {
-                    continue;
-                }
-            }
+    /**
+     * Collects scope changes of all repositories while their diffs are being streamed and reports the union
+     * at most every {@link #PARTIAL_REPORT_INTERVAL_MS}, so the tree can fill in before git has finished.
+     */
+    private static final class PartialScopeReporter {
+        private static final long PARTIAL_REPORT_INTERVAL_MS = 300;
 
-            filtered.add(change);
+        private final Consumer<Collection<Change>> callBack;
+        private final Map<String, List<Change>> changesByRepo = new ConcurrentHashMap<>();
+        private long lastReportNanos = System.nanoTime();
+
+        PartialScopeReporter(Consumer<Collection<Change>> callBack) {
+            this.callBack = callBack;
         }
 
-        return filtered;
-    }
+        Consumer<Change> forRepository(String repoPath) {
+            List<Change> changes = Collections.synchronizedList(new ArrayList<>());
+            changesByRepo.put(repoPath, changes);
+            return change -> {
+                changes.add(change);
+                maybeReport();
+            };
+        }
 
-    @NotNull
-    public Collection<Change> getChangesByHistory(Project project, GitRepository repo, String branchToCompare) throws VcsException {
-        List<GitCommit> commits = GitHistoryUtils.history(project, repo.getRoot(), branchToCompare);
-        Map<FilePath, Change> changeMap = new HashMap<>();
-        for (GitCommit commit : commits) {
-            for (Change change : PlatformApiReflection.getCommitChanges(commit)) {
-                FilePath path = ChangesUtil.getFilePath(change);
-                changeMap.put(path, change);
+        private synchronized void maybeReport() {
+            long now = System.nanoTime();
+            if (TimeUnit.NANOSECONDS.toMillis(now - lastReportNanos) < PARTIAL_REPORT_INTERVAL_MS) {
+                return;
             }
+            lastReportNanos = now;
+            List<Change> snapshot = new ArrayList<>();
+            for (List<Change> changes : changesByRepo.values()) {
+                synchronized (changes) {
+                    snapshot.addAll(changes);
+                }
+            }
+            callBack.accept(snapshot);
         }
-        return new ArrayList<>(changeMap.values());
     }
 
     /**
-     * Collects local changes for HEAD (uncommitted changes) filtered by repository.
+     * Committed part of a repository's scope: the diff between the target and HEAD. It only depends on the
+     * resolved target and the HEAD commit, so it is cached under those and reused while just the working
+     * tree changes.
      *
-     * @param localChanges All local changes from the project
-     * @param repo Repository to filter changes for
-     * @return Collection of local changes within this repository
+     * @param changes        Scope changes only (target..HEAD)
+     * @param paths          File paths of {@code changes}, used to merge the local layer without rescanning them
+     * @param estimatedBytes Rough retained size, used to bound {@link ScopeLayerCache}
      */
-    private Collection<Change> collectHeadChanges(Collection<Change> localChanges, GitRepository repo) {
-        String repoPath = repo.getRoot().getPath();
-        // For HEAD, we only want local changes within this repository (no existing changes to exclude)
-        return filterLocalChanges(localChanges, repoPath, null);
+    record ScopeLayer(Collection<Change> changes, Set<String> paths, long estimatedBytes) {
+        // Change + two revisions + FilePath objects, excluding the path strings themselves
+        static final int CHANGE_OVERHEAD_BYTES = 320;
+
+        static ScopeLayer of(Collection<Change> changes) {
+            Set<String> paths = new HashSet<>(changes.size() * 2);
+            long bytes = 0;
+            for (Change change : changes) {
+                String path = ChangesUtil.getFilePath(change).getPath();
+                paths.add(path);
+                bytes += CHANGE_OVERHEAD_BYTES + 2L * path.length();
+            }
+            return new ScopeLayer(List.copyOf(changes), paths, bytes);
+        }
     }
 
     /**
-     * Result container for changes collection that separates scope, local, and merged changes.
+     * A resolved scope target.
      *
-     * @param mergedChanges Scope changes + local changes (union)
-     * @param scopeChanges Scope changes only (from target branch comparison)
-     * @param localChanges Local changes only (towards HEAD, filtered by repository)
+     * @param revision Revision handed to git
+     * @param sha      Commit the target points to
      */
-    public record RepoChangesResult(Collection<Change> mergedChanges, Collection<Change> scopeChanges, Collection<Change> localChanges) {}
+    private record ScopeTarget(GitRevisionNumber revision, String sha) {}
 
     public RepoChangesResult doCollectChanges(Project project, GitRepository repo, String scopeRef) {
-        VirtualFile file = repo.getRoot();
+        return doCollectChanges(project, repo, scopeRef, new LocalChangesSnapshot(project), null);
+    }
+
+    /**
+     * @param localSnapshot ChangeListManager snapshot shared by all repositories of the collection pass
+     * @param onScopeChange receives scope changes while git diff output is parsed (only when not cached)
+     */
+    RepoChangesResult doCollectChanges(Project project, GitRepository repo, String scopeRef,
+                                       LocalChangesSnapshot localSnapshot,
+                                       @Nullable Consumer<Change> onScopeChange) {
         Collection<Change> scopeChanges;
         Collection<Change> mergedChanges;
         Collection<Change> repoLocalChanges;
 
         try {
-            // Local Changes
-            ChangeListManager changeListManager = ChangeListManager.getInstance(project);
-            Collection<Change> localChanges = changeListManager.getAllChanges();
             String repoPath = repo.getRoot().getPath();
 
-            // Filter local changes for this repository
-            repoLocalChanges = filterLocalChanges(localChanges, repoPath, null);
-
-            // Add unversioned (untracked) files if the setting is enabled
-            if (GitScopeSettings.getInstance().isShowUntrackedFiles()) {
-                for (FilePath unversionedPath : changeListManager.getUnversionedFilesPaths()) {
-                    String filePathStr = unversionedPath.getPath();
-                    if (filePathStr.startsWith(repoPath)) {
-                        Change untrackedChange = new Change(null, new CurrentContentRevision(unversionedPath), FileStatus.UNKNOWN);
-                        repoLocalChanges.add(untrackedChange);
-                    }
-                }
-            }
+            // Local layer: this repository's share of the pass-wide ChangeListManager snapshot
+            repoLocalChanges = localSnapshot.forRepository(repo);
 
             // Special handling for HEAD - return local changes only, no scope changes
             if (scopeRef.equals(GitService.BRANCH_HEAD)) {
                 return new RepoChangesResult(new ArrayList<>(repoLocalChanges), new ArrayList<>(), repoLocalChanges);
             }
 
-            // Diff Changes - these are the pure scope changes
-            if (scopeRef.contains("..")) {
-                scopeChanges = getChangesByHistory(project, repo, scopeRef);
-            } else {
-                GitReference gitReference;
-
-                // First try to find matching branch or tag (skip for relative refs like HEAD~1)
-                gitReference = repo.getBranches().findBranchByName(scopeRef);
-                if (gitReference == null && !scopeRef.contains("~") && !scopeRef.contains("^")) {
-                    // ... try a tag
-                    gitReference = PlatformApiReflection.findTagByName(repo, scopeRef);
-                }
-
-                GitRevisionNumber revisionNumber;
-                if (gitReference == null) {
-                    // Finally resort to try a generic reference (HEAD~2, <hash>, ...)
-                    revisionNumber = GitUtil.resolveGitReference(repo, scopeRef);
-                }
-                else {
-                    revisionNumber = new GitRevisionNumber(gitReference.getFullName());
-                }
-
-                if (revisionNumber != null) {
-                    // We have a valid GitReference
-                    scopeChanges = GitUtil.getDiffChanges(repo, file, revisionNumber);
-                    LOG.debug("ChangesService - Repository: " + repoPath + ", Scope: " + scopeRef + ", scopeChanges count: " + scopeChanges.size());
-                }
-                else {
-                    // We do not have a valid GitReference => return ERROR_STATE
-                    return new RepoChangesResult(ERROR_STATE, new ArrayList<>(), new ArrayList<>());
-                }
+            // Scope layer: git only runs when HEAD or the target has moved since the layer was cached
+            ScopeLayer scopeLayer = getScopeLayer(project, repo, scopeRef, onScopeChange);
+            if (scopeLayer == null) {
+                // We do not have a valid GitReference => return ERROR_STATE
+                return new RepoChangesResult(ERROR_STATE, new ArrayList<>(), new ArrayList<>());
             }
+            scopeChanges = new ArrayList<>(scopeLayer.changes());
 
             // Log what we collected
             LOG.debug("ChangesService - Repository: " + repoPath + ", localChanges count: " + repoLocalChanges.size());
@@ -396,7 +669,7 @@ public class ChangesService extends GitCompareWithRefAction implements Disposabl
             mergedChanges = new ArrayList<>(scopeChanges);
 
             // Add local changes that aren't already in the scope changes (excluding duplicates)
-            Collection<Change> additionalLocalChanges = filterLocalChanges(repoLocalChanges, repoPath, scopeChanges);
+            Collection<Change> additionalLocalChanges = filterLocalChanges(repoLocalChanges, scopeLayer.paths());
             LOG.debug("ChangesService - Repository: " + repoPath + ", additionalLocalChanges count (after filtering): " + additionalLocalChanges.size());
             mergedChanges.addAll(additionalLocalChanges);
 
@@ -406,7 +679,7 @@ public class ChangesService extends GitCompareWithRefAction implements Disposabl
             // Log VCS errors (e.g., locked files, git command failures) but don't fail entirely
             LOG.warn("Error collecting changes for repository " + repo.getRoot().getPath() + ": " + e.getMessage());
             return new RepoChangesResult(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
-        } catch (com.intellij.openapi.progress.ProcessCanceledException e) {
+        } catch (ProcessCanceledException e) {
             throw e;
         } catch (Exception e) {
             // Catch any other unexpected errors (e.g., file system issues)
@@ -417,4 +690,231 @@ public class ChangesService extends GitCompareWithRefAction implements Disposabl
         return new RepoChangesResult(mergedChanges, scopeChanges, repoLocalChanges);
     }
 
+    /**
+     * Returns the scope layer of {@code scopeRef} against the current HEAD, or null when the reference
+     * cannot be resolved. A history range {@code A..B} yields the net changes of B since its merge base
+     * with A, computed with a single streamed git diff instead of walking every commit of the range.
+     */
+    @Nullable
+    private ScopeLayer getScopeLayer(Project project, GitRepository repo, String scopeRef,
+                                     @Nullable Consumer<Change> onScopeChange) throws VcsException {
+        String repoPath = repo.getRoot().getPath();
+
+        GitRevisionNumber fromRevision;
+        String toRevision;
+        if (scopeRef.contains("..")) {
+            int dots = scopeRef.indexOf("..");
+            String from = scopeRef.substring(0, dots);
+            String to = StringUtil.trimStart(scopeRef.substring(dots + 2), ".");
+            ScopeTarget toTarget = resolveScopeTarget(repo, to.isEmpty() ? GitService.BRANCH_HEAD : to);
+            if (toTarget == null) {
+                return null;
+            }
+            fromRevision = resolveMergeBase(repo, from.isEmpty() ? GitService.BRANCH_HEAD : from, toTarget.sha());
+            if (fromRevision == null) {
+                return null;
+            }
+            toRevision = toTarget.sha();
+        } else {
+            String headRevision = repo.getCurrentRevision();
+            if (headRevision == null) {
+                throw new VcsException("Could not resolve HEAD reference");
+            }
+
+            ScopeTarget target = resolveScopeTarget(repo, scopeRef);
+            if (target == null) {
+                return null;
+            }
+            fromRevision = target.revision();
+            toRevision = headRevision;
+        }
+
+        restoreSnapshot();
+
+        ScopeLayerCache.Key layerKey = new ScopeLayerCache.Key(repoPath, fromRevision.asString(), toRevision);
+        lastLayerKeys.put(repoPath + "|" + scopeRef, layerKey);
+        ScopeLayer cached = scopeLayerCache.get(layerKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Identical requests (another tab on the same commits, a collection superseding this one) join the
+        // diff that is already running instead of spawning another git process
+        return inFlightLayers.get(layerKey,
+                onChange -> computeScopeLayer(repo, layerKey, scopeRef, fromRevision, toRevision, onChange),
+                onScopeChange);
+    }
+
+    private ScopeLayer computeScopeLayer(GitRepository repo, ScopeLayerCache.Key layerKey, String scopeRef,
+                                         GitRevisionNumber fromRevision, String toRevision,
+                                         Consumer<Change> onScopeChange) throws VcsException {
+        String repoPath = repo.getRoot().getPath();
+        ScopeLayer layer;
+        try {
+            layer = ScopeLayer.of(GitUtil.getDiffChanges(repo, repo.getRoot(), fromRevision,
+                    new GitRevisionNumber(toRevision), onScopeChange));
+        } catch (VcsException e) {
+            if (GitUtil.isFileAccessError(e)) {
+                // Transient (e.g. locked file): show an empty scope but do not cache it
+                LOG.warn("File access error (possibly locked file) in repository " + repoPath + ": " + e.getMessage());
+                return ScopeLayer.of(List.of());
+            }
+            throw e;
+        }
+        LOG.debug("ChangesService - Repository: " + repoPath + ", Scope: " + scopeRef + ", scopeChanges count: " + layer.changes().size());
+
+        scopeLayerCache.put(layerKey, layer);
+        return layer;
+    }
+
+    /**
+     * Seeds the scope layer cache from the snapshot of the previous session, once. Restored layers are only
+     * served for keys matching the freshly resolved target and HEAD commits.
+     */
+    private synchronized void restoreSnapshot() {
+        if (snapshotRestored) {
+            return;
+        }
+        ScopeSnapshotStore.Snapshot snapshot = snapshotStore.load();
+        snapshot.layers().forEach(scopeLayerCache::put);
+        restoredLayerKeys = Map.copyOf(snapshot.keysByScope());
+        savedLayerKeys = restoredLayerKeys;
+        snapshotRestored = true;
+    }
+
+    /**
+     * The scope the given targets showed in the previous session, merged with the current local changes,
+     * without running git: refs are not resolved, so the result is provisional and must be followed by a
+     * regular collection, which verifies it. Returns null unless every repository's scope was persisted and
+     * its HEAD is still the persisted one. Must not run on the EDT (reads the snapshot on first use).
+     */
+    @Nullable
+    public ChangesResult restoredResult(TargetBranchMap targetBranchByRepo) {
+        restoreSnapshot();
+        Map<String, ScopeLayerCache.Key> keys = restoredLayerKeys;
+        if (keys.isEmpty()) {
+            return null;
+        }
+        LocalChangesSnapshot localSnapshot = new LocalChangesSnapshot(project);
+        ChangesMerger merger = new ChangesMerger();
+        for (GitRepository repo : git.getRepositories()) {
+            String scopeRef = getBranchToCompare(targetBranchByRepo, repo);
+            Collection<Change> repoLocalChanges = localSnapshot.forRepository(repo);
+            if (scopeRef.equals(GitService.BRANCH_HEAD)) {
+                merger.add(new RepoChangesResult(new ArrayList<>(repoLocalChanges), new ArrayList<>(), repoLocalChanges));
+                continue;
+            }
+            ScopeLayerCache.Key key = keys.get(repo.getRoot().getPath() + "|" + scopeRef);
+            ScopeLayer layer = key == null ? null : scopeLayerCache.get(key);
+            if (layer == null || !key.headSha().equals(repo.getCurrentRevision())) {
+                return null;
+            }
+            List<Change> mergedChanges = new ArrayList<>(layer.changes());
+            mergedChanges.addAll(filterLocalChanges(repoLocalChanges, layer.paths()));
+            merger.add(new RepoChangesResult(mergedChanges, new ArrayList<>(layer.changes()), repoLocalChanges));
+        }
+        // No fingerprint: the verifying collection must never be skipped as unchanged
+        return merger.toResult(null);
+    }
+
+    /**
+     * The snapshot of the scopes of the last collection, or null when there is none or it was already written.
+     */
+    @Nullable
+    private ScopeSnapshotStore.Snapshot snapshotToSave() {
+        Map<ScopeLayerCache.Key, ScopeLayer> layers = new LinkedHashMap<>();
+        Map<String, ScopeLayerCache.Key> keysByScope = new LinkedHashMap<>();
+        for (Map.Entry<String, ScopeLayerCache.Key> entry : lastLayerKeys.entrySet()) {
+            ScopeLayer layer = scopeLayerCache.get(entry.getValue());
+            if (layer != null) {
+                layers.put(entry.getValue(), layer);
+                keysByScope.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (layers.isEmpty() || keysByScope.equals(savedLayerKeys)) {
+            return null;
+        }
+        return new ScopeSnapshotStore.Snapshot(layers, keysByScope);
+    }
+
+    @Nullable
+    private Future<?> submitSnapshotSave() {
+        ScopeSnapshotStore.Snapshot snapshot = snapshotToSave();
+        if (snapshot == null) {
+            return null;
+        }
+        savedLayerKeys = snapshot.keysByScope();
+        try {
+            return snapshotExecutor.submit(() -> snapshotStore.save(snapshot));
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    private void saveSnapshotInBackground() {
+        if (!disposing.get()) {
+            submitSnapshotSave();
+        }
+    }
+
+    private void saveSnapshotOnDispose() {
+        Future<?> save = submitSnapshotSave();
+        snapshotExecutor.shutdown();
+        if (save == null) {
+            return;
+        }
+        try {
+            save.get(SNAPSHOT_SAVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOG.warn("Scope snapshot was not written within " + SNAPSHOT_SAVE_TIMEOUT_MS + " ms; it is finished in the background");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.warn("Failed to write scope snapshot", e.getCause());
+        }
+    }
+
+    /**
+     * Resolves a branch, tag or generic commit-ish (HEAD~2, &lt;hash&gt;, ...) to the revision to diff against.
+     * Results are served from {@link #refCache} until the repository's refs change.
+     */
+    @Nullable
+    private ScopeTarget resolveScopeTarget(GitRepository repo, String scopeRef) {
+        String sha = refCache.resolve(repo.getRoot().getPath(), scopeRef, () -> resolveScopeTargetSha(repo, scopeRef));
+        return sha == null ? null : new ScopeTarget(new GitRevisionNumber(sha), sha);
+    }
+
+    @Nullable
+    private static String resolveScopeTargetSha(GitRepository repo, String scopeRef) {
+        // First try to find matching branch; its tip is usually known in memory
+        String refSpec = scopeRef;
+        GitBranch branch = repo.getBranches().findBranchByName(scopeRef);
+        if (branch != null) {
+            Hash hash = repo.getBranches().getHash(branch);
+            if (hash != null) {
+                return hash.asString();
+            }
+            refSpec = branch.getFullName();
+        } else if (!scopeRef.contains("~") && !scopeRef.contains("^")) {
+            // ... then a tag (skip for relative refs like HEAD~1)
+            GitReference tag = PlatformApiReflection.findTagByName(repo, scopeRef);
+            if (tag != null) {
+                refSpec = tag.getFullName();
+            }
+        }
+
+        // Finally resolve to a commit (HEAD~2, <hash>, tag, ...)
+        GitRevisionNumber revisionNumber = GitUtil.resolveGitReference(repo, refSpec);
+        return revisionNumber == null ? null : revisionNumber.asString();
+    }
+
+    @Nullable
+    private GitRevisionNumber resolveMergeBase(GitRepository repo, String from, String toSha) {
+        String sha = refCache.resolve(repo.getRoot().getPath(), from + "..." + toSha, () -> {
+            GitRevisionNumber mergeBase = GitUtil.resolveMergeBase(repo, from, toSha);
+            return mergeBase == null ? null : mergeBase.asString();
+        });
+        return sha == null ? null : new GitRevisionNumber(sha);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package implementation.compare;
+
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ChangesUtil;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import git4idea.repo.GitRepository;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import service.GitService;
+import settings.GitScopeSettings;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Cheap summary of everything a collection result depends on: per repository the HEAD commit, the scope ref and
+ * the commit it resolves to, plus a hash of its local changes (and, if shown, untracked files) and the settings
+ * that filter them. Two equal fingerprints yield the same result, so a refresh whose fingerprint matches the one
+ * already applied can be skipped entirely. Ref resolution goes through the resolution cache; nothing here runs
+ * git unless a ref is not cached yet. Local changes are hashed from the pass's {@link LocalChangesSnapshot}, so
+ * the ChangeListManager is read once per pass, for the fingerprint and the collection alike.
+ */
+final class CollectionFingerprint {
+
+    private CollectionFingerprint() {
+    }
+
+    /**
+     * @param scopeRefOf  scope ref per repository (as passed to the collection)
+     * @param resolveSha  resolves a ref of a repository to a commit, or null when it cannot be resolved
+     * @return the fingerprint, or null when some state could not be determined (never skip in that case)
+     */
+    @Nullable
+    static String compute(@NotNull LocalChangesSnapshot localSnapshot, @NotNull List<GitRepository> repositories,
+                          @NotNull Function<GitRepository, String> scopeRefOf,
+                          @NotNull BiFunction<GitRepository, String, String> resolveSha) {
+        GitScopeSettings settings = GitScopeSettings.getInstance();
+        boolean showDeletedFiles = settings.isShowDeletedFiles();
+        boolean showUntrackedFiles = settings.isShowUntrackedFiles();
+
+        StringBuilder fingerprint = new StringBuilder();
+        fingerprint.append(showDeletedFiles ? 'D' : '-').append(showUntrackedFiles ? 'U' : '-');
+        for (GitRepository repo : repositories) {
+            String head = repo.getCurrentRevision();
+            if (head == null) {
+                return null;
+            }
+            String scopeRef = scopeRefOf.apply(repo);
+            fingerprint.append('|').append(repo.getRoot().getPath()).append('@').append(head).append(':').append(scopeRef);
+            for (String ref : scopeRef.split("\\.\\.\\.?", -1)) {
+                if (ref.isEmpty() || ref.equals(GitService.BRANCH_HEAD)) {
+                    continue; // HEAD is already part of the fingerprint
+                }
+                String sha = resolveSha.apply(repo, ref);
+                if (sha == null) {
+                    return null;
+                }
+                fingerprint.append('=').append(sha);
+            }
+            long localHash = 1;
+            for (Change change : localSnapshot.view(repo)) {
+                localHash = 31 * localHash + hash(change);
+            }
+            fingerprint.append('#').append(Long.toHexString(localHash));
+        }
+        return fingerprint.toString();
+    }
+
+    private static int hash(Change change) {
+        int result = ChangesUtil.getFilePath(change).getPath().hashCode();
+        result = 31 * result + change.getType().ordinal();
+        result = 31 * result + revisionHash(change.getBeforeRevision());
+        return 31 * result + revisionHash(change.getAfterRevision());
+    }
+
+    private static int revisionHash(@Nullable ContentRevision revision) {
+        if (revision == null) {
+            return 0;
+        }
+        return 31 * revision.getFile().getPath().hashCode() + revision.getRevisionNumber().asString().hashCode();
+    }
+}
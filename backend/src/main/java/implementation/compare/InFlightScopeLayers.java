@@ -0,0 +1,179 @@
+package implementation.compare;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vcs.changes.Change;
+import implementation.compare.ChangesService.ScopeLayer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Single-flight registry for scope layer computations. A caller asking for a layer that is already being
+ * computed (another tab on the same commits, or a collection that superseded one for the same refs) attaches
+ * to the running git diff instead of starting a new one. Computations are owned by this registry rather than
+ * by a caller, so cancelling a superseded collection does not kill a diff the next collection is waiting for.
+ */
+final class InFlightScopeLayers {
+
+    @FunctionalInterface
+    interface Computation {
+        /**
+         * Computes (and caches, if appropriate) the layer, passing every change to {@code onChange} as it is parsed.
+         */
+        @NotNull
+        ScopeLayer compute(@NotNull Consumer<Change> onChange) throws VcsException;
+    }
+
+    /**
+     * One running computation. Changes streamed so far are replayed to callers that attach late.
+     */
+    private static final class Flight {
+        private final CompletableFuture<ScopeLayer> result = new CompletableFuture<>();
+        private final ProgressIndicator indicator = new EmptyProgressIndicator();
+        // Guarded by this
+        private final List<Change> streamed = new ArrayList<>();
+        private final List<Consumer<Change>> listeners = new ArrayList<>();
+
+        private synchronized void subscribe(@NotNull Consumer<Change> listener) {
+            streamed.forEach(listener);
+            listeners.add(listener);
+        }
+
+        private synchronized void unsubscribe(@NotNull Consumer<Change> listener) {
+            listeners.remove(listener);
+        }
+
+        private synchronized void publish(@NotNull Change change) {
+            streamed.add(change);
+            for (Consumer<Change> listener : listeners) {
+                listener.accept(change);
+            }
+        }
+    }
+
+    private final Map<ScopeLayerCache.Key, Flight> flights = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final long pollMs;
+
+    InFlightScopeLayers(@NotNull ExecutorService executor, long pollMs) {
+        this.executor = executor;
+        this.pollMs = pollMs;
+    }
+
+    /**
+     * Returns the layer for {@code key}, joining a running computation or starting {@code computation}.
+     * Blocks until the layer is available while honouring the caller's progress cancellation.
+     *
+     * @param onChange receives the layer's changes while they are parsed, including those parsed before joining
+     */
+    @NotNull
+    ScopeLayer get(@NotNull ScopeLayerCache.Key key, @NotNull Computation computation,
+                   @Nullable Consumer<Change> onChange) throws VcsException {
+        Flight flight = new Flight();
+        Flight running = flights.putIfAbsent(key, flight);
+        if (running == null) {
+            start(key, flight, computation);
+        } else {
+            flight = running;
+        }
+
+        if (onChange != null) {
+            flight.subscribe(onChange);
+        }
+        try {
+            return await(flight);
+        } finally {
+            if (onChange != null) {
+                flight.unsubscribe(onChange);
+            }
+        }
+    }
+
+    private void start(ScopeLayerCache.Key key, Flight flight, Computation computation) {
+        try {
+            executor.execute(() -> {
+                try {
+                    flight.result.complete(run(flight, computation));
+                } catch (Throwable t) {
+                    flight.result.completeExceptionally(t);
+                } finally {
+                    flights.remove(key, flight);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Executor already shut down (project closing)
+            flights.remove(key, flight);
+            flight.result.completeExceptionally(new ProcessCanceledException(e));
+        }
+    }
+
+    private static ScopeLayer run(Flight flight, Computation computation) throws VcsException {
+        Ref<VcsException> error = Ref.create();
+        ScopeLayer layer = ProgressManager.getInstance().runProcess(() -> {
+            try {
+                return computation.compute(flight::publish);
+            } catch (VcsException e) {
+                error.set(e);
+                return null;
+            }
+        }, flight.indicator);
+        if (!error.isNull()) {
+            throw error.get();
+        }
+        return layer;
+    }
+
+    private ScopeLayer await(Flight flight) throws VcsException {
+        while (true) {
+            ProgressManager.checkCanceled();
+            try {
+                return flight.result.get(pollMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // poll again so the caller's cancellation is noticed while git is running
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException(e);
+            } catch (CancellationException e) {
+                throw new ProcessCanceledException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof VcsException vcsException) {
+                    throw vcsException;
+                }
+                if (cause instanceof ProcessCanceledException pce) {
+                    throw pce;
+                }
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    /**
+     * Cancels all running computations; callers waiting on them get a {@link ProcessCanceledException}.
+     */
+    void cancelAll() {
+        for (Flight flight : flights.values()) {
+            flight.indicator.cancel();
+        }
+        flights.clear();
+    }
+}
@@ -0,0 +1,87 @@
+package implementation.compare;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.FileStatus;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ChangeListManager;
+import com.intellij.openapi.vcs.changes.ChangesUtil;
+import com.intellij.openapi.vcs.changes.CurrentContentRevision;
+import git4idea.repo.GitRepository;
+import org.jetbrains.annotations.NotNull;
+import service.RepoRootIndex;
+import settings.GitScopeSettings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One ChangeListManager snapshot per collection pass, partitioned by repository. Every local change (and
+ * untracked file, if enabled) is assigned to the innermost repository root containing it via
+ * {@link RepoRootIndex}, in a single pass over the snapshot. The snapshot is taken lazily, on the first
+ * repository that actually needs its local layer (or by the {@link CollectionFingerprint}), and then shared by
+ * all per-repository workers of the pass.
+ */
+final class LocalChangesSnapshot {
+
+    private final Project project;
+    private Map<GitRepository, List<Change>> changesByRepository;
+
+    LocalChangesSnapshot(@NotNull Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Local changes of {@code repository}; the returned list is a fresh copy the caller may modify.
+     */
+    @NotNull
+    List<Change> forRepository(@NotNull GitRepository repository) {
+        return new ArrayList<>(view(repository));
+    }
+
+    /**
+     * Local changes of {@code repository}, read-only and without copying.
+     */
+    @NotNull
+    synchronized List<Change> view(@NotNull GitRepository repository) {
+        if (changesByRepository == null) {
+            changesByRepository = partition();
+        }
+        List<Change> changes = changesByRepository.get(repository);
+        return changes == null ? List.of() : Collections.unmodifiableList(changes);
+    }
+
+    private Map<GitRepository, List<Change>> partition() {
+        RepoRootIndex rootIndex = RepoRootIndex.getInstance(project);
+
+        ChangeListManager changeListManager = ChangeListManager.getInstance(project);
+        GitScopeSettings settings = GitScopeSettings.getInstance();
+        boolean showDeletedFiles = settings.isShowDeletedFiles();
+        Map<GitRepository, List<Change>> result = new HashMap<>();
+
+        for (Change change : changeListManager.getAllChanges()) {
+            if (!showDeletedFiles && change.getType() == Change.Type.DELETED) {
+                continue;
+            }
+            GitRepository repo = rootIndex.getRepository(ChangesUtil.getFilePath(change).getPath());
+            if (repo != null) {
+                result.computeIfAbsent(repo, __ -> new ArrayList<>()).add(change);
+            }
+        }
+
+        // Add unversioned (untracked) files if the setting is enabled
+        if (settings.isShowUntrackedFiles()) {
+            for (FilePath unversionedPath : changeListManager.getUnversionedFilesPaths()) {
+                GitRepository repo = rootIndex.getRepository(unversionedPath.getPath());
+                if (repo != null) {
+                    Change untrackedChange = new Change(null, new CurrentContentRevision(unversionedPath), FileStatus.UNKNOWN);
+                    result.computeIfAbsent(repo, __ -> new ArrayList<>()).add(untrackedChange);
+                }
+            }
+        }
+        return result;
+    }
+}
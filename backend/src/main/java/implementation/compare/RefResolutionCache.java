@@ -0,0 +1,50 @@
+package implementation.compare;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Remembers which commit a ref spec resolved to, per repository root, so refreshes triggered by working-tree
+ * edits do not spawn {@code git rev-parse} / {@code git merge-base} again. Unresolvable specs are remembered
+ * as well. Entries of a root stay valid until its refs change; callers invalidate the root on
+ * {@code GitRepositoryChangeListener} events and on VFS changes of {@code HEAD}, {@code refs/} or
+ * {@code packed-refs}.
+ */
+final class RefResolutionCache {
+
+    // Marks a spec that did not resolve; ConcurrentHashMap cannot hold null values
+    private static final String UNRESOLVED = "";
+
+    private final Map<String, Map<String, String>> shaByRefSpecByRoot = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the cached commit of {@code refSpec} in {@code root}, resolving it with {@code resolver} on a miss.
+     * The resolver runs outside any lock; it returns null when the spec cannot be resolved.
+     */
+    @Nullable
+    String resolve(@NotNull String root, @NotNull String refSpec, @NotNull Supplier<@Nullable String> resolver) {
+        Map<String, String> shaByRefSpec = shaByRefSpecByRoot.computeIfAbsent(root, __ -> new ConcurrentHashMap<>());
+        String sha = shaByRefSpec.get(refSpec);
+        if (sha == null) {
+            String resolved = resolver.get();
+            sha = resolved == null ? UNRESOLVED : resolved;
+            // Only store if the root was not invalidated while resolving
+            if (shaByRefSpecByRoot.get(root) == shaByRefSpec) {
+                shaByRefSpec.put(refSpec, sha);
+            }
+        }
+        return sha.equals(UNRESOLVED) ? null : sha;
+    }
+
+    void invalidate(@NotNull String root) {
+        shaByRefSpecByRoot.remove(root);
+    }
+
+    void clear() {
+        shaByRefSpecByRoot.clear();
+    }
+}
@@ -0,0 +1,78 @@
+package implementation.compare;
+
+import implementation.compare.ChangesService.RepoChangesResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Complete per-repository results keyed by repo path + "|" + scope ref. They are shared by every tab on the same
+ * scope, so a tab whose results are still here (collected while it was active, or prefetched in the background)
+ * is shown without running git. Least recently used entries are evicted once the estimated size exceeds the
+ * byte budget.
+ */
+final class RepoResultCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, RepoChangesResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    RepoResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized @Nullable RepoChangesResult get(@NotNull String key) {
+        return entries.get(key);
+    }
+
+    synchronized boolean contains(@NotNull String key) {
+        return entries.containsKey(key);
+    }
+
+    synchronized void put(@NotNull String key, @NotNull RepoChangesResult result) {
+        RepoChangesResult previous = entries.put(key, result);
+        if (previous != null) {
+            totalBytes -= estimateBytes(previous);
+        }
+        totalBytes += estimateBytes(result);
+
+        Iterator<Map.Entry<String, RepoChangesResult>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, RepoChangesResult> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            totalBytes -= estimateBytes(eldest.getValue());
+            it.remove();
+        }
+    }
+
+    /**
+     * Drops every entry of the repository at {@code repoPath}, across all scopes.
+     */
+    synchronized void removeRepository(@NotNull String repoPath) {
+        String prefix = repoPath + "|";
+        Iterator<Map.Entry<String, RepoChangesResult>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, RepoChangesResult> entry = it.next();
+            if (entry.getKey().startsWith(prefix)) {
+                totalBytes -= estimateBytes(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    private static long estimateBytes(RepoChangesResult result) {
+        // Merged holds the same Change objects as scope and local; only the three lists are owned here
+        long references = result.mergedChanges().size() + result.scopeChanges().size() + result.localChanges().size();
+        return result.mergedChanges().size() * ChangesService.ScopeLayer.CHANGE_OVERHEAD_BYTES + references * 8L;
+    }
+}
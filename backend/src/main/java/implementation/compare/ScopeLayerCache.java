@@ -0,0 +1,67 @@
+package implementation.compare;
+
+import com.intellij.openapi.diagnostic.Logger;
+import implementation.compare.ChangesService.ScopeLayer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import system.Defs;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Content-addressed cache of scope layers. Entries are keyed by the resolved commits rather than by ref
+ * names, so a moved ref simply misses, and tabs (or a tag and a branch) pointing at the same commit share
+ * one entry. Least recently used entries are evicted once the estimated size exceeds the byte budget.
+ */
+final class ScopeLayerCache {
+    private static final Logger LOG = Defs.getLogger(ScopeLayerCache.class);
+
+    /**
+     * @param root      Repository root path
+     * @param targetSha Commit the scope target resolved to
+     * @param headSha   HEAD commit
+     */
+    record Key(@NotNull String root, @NotNull String targetSha, @NotNull String headSha) {}
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, ScopeLayer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    ScopeLayerCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized @Nullable ScopeLayer get(@NotNull Key key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(@NotNull Key key, @NotNull ScopeLayer layer) {
+        if (layer.estimatedBytes() > maxBytes) {
+            // A single oversized scope would evict everything else; recomputing it is cheaper than thrashing
+            LOG.debug("ScopeLayerCache - not caching " + key + " (" + layer.estimatedBytes() + " bytes)");
+            return;
+        }
+        ScopeLayer previous = entries.put(key, layer);
+        if (previous != null) {
+            totalBytes -= previous.estimatedBytes();
+        }
+        totalBytes += layer.estimatedBytes();
+
+        Iterator<Map.Entry<Key, ScopeLayer>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Key, ScopeLayer> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            totalBytes -= eldest.getValue().estimatedBytes();
+            it.remove();
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+}
@@ -0,0 +1,202 @@
+package implementation.compare;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.vcsUtil.VcsUtil;
+import git4idea.GitRevisionNumber;
+import implementation.compare.ChangesService.ScopeLayer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import system.Defs;
+import utils.GitBlobContentRevision;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persists the scope layers of the last collection in a compact binary file, so the first collection after
+ * an IDE start can reuse them instead of running git diff for every tab.
+ * <p>
+ * Layers are stored under their {@link ScopeLayerCache.Key} (repository root, target commit, HEAD commit)
+ * and only contain paths relative to the root plus the change type, followed by the scope refs
+ * ({@code <root>|<ref>}) that last used each layer. The refs let the previous scope be shown at startup before
+ * anything was resolved; the collection then verifies it, and only serves a layer from the cache once the
+ * current HEAD and target commits matched its key; a moved ref simply misses.
+ * The file lives in the IDE system directory rather than next to the project configuration so it is never
+ * shared through version control.
+ */
+final class ScopeSnapshotStore {
+    private static final Logger LOG = Defs.getLogger(ScopeSnapshotStore.class);
+
+    private static final int MAGIC = 0x47535331; // "GSS1"
+    private static final int VERSION = 2;
+
+    private static final byte TYPE_MODIFIED = 0;
+    private static final byte TYPE_NEW = 1;
+    private static final byte TYPE_DELETED = 2;
+    private static final byte TYPE_MOVED = 3;
+
+    private final Project project;
+    private final Path file;
+
+    ScopeSnapshotStore(@NotNull Project project) {
+        this.project = project;
+        this.file = Path.of(PathManager.getSystemPath(), "gitscope", project.getLocationHash() + ".bin");
+    }
+
+    /**
+     * Persisted layers and the layer key each scope ref ({@code <root>|<ref>}) last used.
+     */
+    record Snapshot(Map<ScopeLayerCache.Key, ScopeLayer> layers, Map<String, ScopeLayerCache.Key> keysByScope) {
+        static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of());
+    }
+
+    /**
+     * Reads all persisted layers; returns {@link Snapshot#EMPTY} when there is no (valid) snapshot.
+     */
+    @NotNull
+    Snapshot load() {
+        if (!Files.isRegularFile(file)) {
+            return Snapshot.EMPTY;
+        }
+        Map<ScopeLayerCache.Key, ScopeLayer> layers = new LinkedHashMap<>();
+        Map<String, ScopeLayerCache.Key> keysByScope = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOG.debug("ScopeSnapshotStore - ignoring snapshot with unknown format: " + file);
+                return Snapshot.EMPTY;
+            }
+            int layerCount = in.readInt();
+            for (int i = 0; i < layerCount; i++) {
+                ScopeLayerCache.Key key = new ScopeLayerCache.Key(in.readUTF(), in.readUTF(), in.readUTF());
+                GitRevisionNumber target = new GitRevisionNumber(key.targetSha());
+                GitRevisionNumber head = new GitRevisionNumber(key.headSha());
+                VirtualFile root = LocalFileSystem.getInstance().findFileByPath(key.root());
+                int changeCount = in.readInt();
+                List<Change> changes = new ArrayList<>(changeCount);
+                for (int c = 0; c < changeCount; c++) {
+                    byte type = in.readByte();
+                    String beforePath = in.readUTF();
+                    String afterPath = type == TYPE_MOVED ? in.readUTF() : beforePath;
+                    if (root == null) {
+                        continue;
+                    }
+                    ContentRevision before = type == TYPE_NEW ? null : revision(root, beforePath, target);
+                    ContentRevision after = type == TYPE_DELETED ? null : revision(root, afterPath, head);
+                    changes.add(new Change(before, after));
+                }
+                int scopeCount = in.readInt();
+                for (int r = 0; r < scopeCount; r++) {
+                    String scope = in.readUTF();
+                    if (root != null) {
+                        keysByScope.put(scope, key);
+                    }
+                }
+                // A root that no longer exists cannot be a scope any more
+                if (root != null) {
+                    layers.put(key, ScopeLayer.of(changes));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("ScopeSnapshotStore - could not read scope snapshot " + file + ": " + e.getMessage());
+            return Snapshot.EMPTY;
+        }
+        LOG.debug("ScopeSnapshotStore - loaded " + layers.size() + " scope layers");
+        return new Snapshot(layers, keysByScope);
+    }
+
+    /**
+     * Replaces the snapshot with the given layers and scope refs. Written to a temporary file first so an
+     * interrupted write never leaves a truncated snapshot behind.
+     */
+    void save(@NotNull Snapshot snapshot) {
+        Map<ScopeLayerCache.Key, ScopeLayer> layers = snapshot.layers();
+        Map<ScopeLayerCache.Key, List<String>> scopesByKey = new HashMap<>();
+        snapshot.keysByScope().forEach((scope, key) -> scopesByKey.computeIfAbsent(key, __ -> new ArrayList<>()).add(scope));
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(layers.size());
+                for (Map.Entry<ScopeLayerCache.Key, ScopeLayer> entry : layers.entrySet()) {
+                    ScopeLayerCache.Key key = entry.getKey();
+                    out.writeUTF(key.root());
+                    out.writeUTF(key.targetSha());
+                    out.writeUTF(key.headSha());
+                    writeChanges(out, key.root(), entry.getValue().changes());
+                    List<String> scopes = scopesByKey.getOrDefault(key, List.of());
+                    out.writeInt(scopes.size());
+                    for (String scope : scopes) {
+                        out.writeUTF(scope);
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("ScopeSnapshotStore - could not write scope snapshot " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static void writeChanges(DataOutputStream out, String root, Collection<Change> changes) throws IOException {
+        // Changes outside the root cannot be stored relative to it; they are left to the next git diff
+        List<String[]> entries = new ArrayList<>(changes.size());
+        for (Change change : changes) {
+            ContentRevision before = change.getBeforeRevision();
+            ContentRevision after = change.getAfterRevision();
+            String beforePath = before == null ? null : relativize(root, before.getFile());
+            String afterPath = after == null ? null : relativize(root, after.getFile());
+            if ((before != null && beforePath == null) || (after != null && afterPath == null)
+                    || (beforePath == null && afterPath == null)) {
+                continue;
+            }
+            entries.add(new String[]{beforePath, afterPath});
+        }
+
+        out.writeInt(entries.size());
+        for (String[] entry : entries) {
+            String beforePath = entry[0];
+            String afterPath = entry[1];
+            if (beforePath == null) {
+                out.writeByte(TYPE_NEW);
+                out.writeUTF(afterPath);
+            } else if (afterPath == null) {
+                out.writeByte(TYPE_DELETED);
+                out.writeUTF(beforePath);
+            } else if (!beforePath.equals(afterPath)) {
+                out.writeByte(TYPE_MOVED);
+                out.writeUTF(beforePath);
+                out.writeUTF(afterPath);
+            } else {
+                out.writeByte(TYPE_MODIFIED);
+                out.writeUTF(afterPath);
+            }
+        }
+    }
+
+    @Nullable
+    private static String relativize(String root, FilePath path) {
+        String absolute = path.getPath();
+        return absolute.startsWith(root + "/") ? absolute.substring(root.length() + 1) : null;
+    }
+
+    private ContentRevision revision(VirtualFile root, String relativePath, GitRevisionNumber revision) {
+        FilePath path = VcsUtil.getFilePath(root.getPath() + "/" + relativePath, false);
+        return new GitBlobContentRevision(project, root, path, revision, null);
+    }
+}
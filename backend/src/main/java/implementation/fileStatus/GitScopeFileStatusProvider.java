@@ -3,17 +3,15 @@ package implementation.fileStatus;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
 import com.intellij.openapi.vcs.FileStatus;
-import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.changes.ChangeListManager;
 import com.intellij.openapi.vcs.impl.FileStatusProvider;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import service.RepoRootIndex;
 import service.ViewService;
 import settings.GitScopeSettings;
 
-import java.util.Map;
-
 /**
  * Provides custom file status colors based on the active Git Scope tab
  * instead of the default diff against HEAD.
@@ -46,8 +44,6 @@ public class GitScopeFileStatusProvider implements FileStatusProvider {
             return null;
         }
 
-        String filePath = virtualFile.getPath();
-
         // STRATEGY: If file is locally modified towards HEAD, let IntelliJ handle it.
         // Use ChangeListManager for a live (non-cached) check so that after an undo the
         // scope color is restored immediately without waiting for the next collectChanges().
@@ -57,24 +53,11 @@ public class GitScopeFileStatusProvider implements FileStatusProvider {
             return null;
         }
 
-        // File is NOT in local changes - check if it's in the Git Scope (scope changes only)
-        // Use HashMap lookup for O(1) performance instead of iterating through all changes
-        Map<String, Change> scopeChangesMap = viewService.getScopeChangesMap();
-        if (scopeChangesMap == null || scopeChangesMap.isEmpty()) {
-            // No changes in scope - return null to fall back to default behavior
-            return null;
-        }
-
-        // Check if this file has changes in the current scope using O(1) lookup
-        Change change = scopeChangesMap.get(filePath);
-        if (change != null) {
-            // File is in Git Scope but NOT in local changes - we control the color
-            // Use the FileStatus directly from the Change object
-            return change.getFileStatus();
-        }
-
-        // File not in scope changes - return null to let default provider handle it
-        return null;
+        // File is NOT in local changes - check if it's in the Git Scope (scope changes only).
+        // The snapshot is published atomically by ViewService, so this lookup needs no lock and no EDT work.
+        // If the file is in the scope, we control the color using the FileStatus of its scope change;
+        // otherwise return null to let the default provider handle it
+        return viewService.getSnapshot().scopeStatus(virtualFile.getPath());
     }
 
     /**
@@ -86,13 +69,14 @@ public class GitScopeFileStatusProvider implements FileStatusProvider {
         ProjectManager projectManager =
             ProjectManager.getInstance();
 
+        String path = virtualFile.getPath();
         for (com.intellij.openapi.project.Project project : projectManager.getOpenProjects()) {
             if (project.isDisposed()) {
                 continue;
             }
-            // Check if this file belongs to this project
-            String basePath = project.getBasePath();
-            if (basePath != null && virtualFile.getPath().startsWith(basePath)) {
+            // Check if this file belongs to this project (its base path or one of its git roots)
+            RepoRootIndex rootIndex = RepoRootIndex.getInstance(project);
+            if (rootIndex != null && rootIndex.contains(path)) {
                 return project;
             }
         }
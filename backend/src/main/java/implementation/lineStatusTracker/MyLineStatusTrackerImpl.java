@@ -14,15 +14,18 @@ import com.intellij.openapi.fileEditor.FileEditorManagerListener;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Disposer;
-import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ContentRevision;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.concurrency.SequentialTaskExecutor;
 import com.intellij.util.messages.MessageBusConnection;
+import implementation.gutter.LineIndexedText;
 import implementation.gutter.Range;
 import implementation.gutter.RangesBuilder;
+import implementation.gutter.ThreeWayRangeEngine;
 import org.jetbrains.annotations.NotNull;
+import service.GitContentService;
 import service.GutterDataService;
 import system.Defs;
 
@@ -55,6 +58,8 @@ public class MyLineStatusTrackerImpl implements Disposable {
 
     // Track which documents we've published data for (so we can clear them)
     private final Set<String> publishedFiles = ConcurrentHashMap.newKeySet();
+    // Base↔HEAD alignment per open file with local changes, reused until the base or HEAD revision changes
+    private final Map<String, ThreeWayRangeEngine> rangeEngines = new ConcurrentHashMap<>();
 
     @Override
     public void dispose() {
@@ -74,6 +79,7 @@ public class MyLineStatusTrackerImpl implements Disposable {
                     @Override
                     public void fileClosed(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
                         String path = file.getPath();
+                        rangeEngines.remove(path);
                         if (publishedFiles.remove(path)) {
                             gutterDataService.clear(path);
                         }
@@ -89,10 +95,23 @@ public class MyLineStatusTrackerImpl implements Disposable {
      * Computes ranges on background threads and publishes results to GutterDataService.
      */
     public void update(Map<String, Change> scopeChangesMap, Map<String, Change> localChangesMap) {
+        update(scopeChangesMap, localChangesMap, false);
+    }
+
+    /**
+     * Like {@link #update}, but only for editors of scope files that have no published data yet, e.g. files
+     * opened while the scope stayed the same. Does not supersede a pending full update.
+     */
+    public void updateUnpublished(Map<String, Change> scopeChangesMap, Map<String, Change> localChangesMap) {
+        update(scopeChangesMap, localChangesMap, true);
+    }
+
+    private void update(Map<String, Change> scopeChangesMap, Map<String, Change> localChangesMap,
+                        boolean unpublishedOnly) {
         if (scopeChangesMap == null || disposing.get()) return;
 
         final DisposalToken token = this.disposalToken;
-        final long gen = updateGeneration.incrementAndGet();
+        final long gen = unpublishedOnly ? updateGeneration.get() : updateGeneration.incrementAndGet();
 
         updateExecutor.execute(() -> {
             if (token.disposed || updateGeneration.get() != gen) return;
@@ -106,13 +125,18 @@ public class MyLineStatusTrackerImpl implements Disposable {
                 VirtualFile file = FileDocumentManager.getInstance().getFile(doc);
                 if (file == null) continue;
                 String filePath = file.getPath();
-                if (scopeChangesMap.containsKey(filePath) || publishedFiles.contains(filePath)) {
+                boolean published = publishedFiles.contains(filePath);
+                if (unpublishedOnly ? !published && scopeChangesMap.containsKey(filePath)
+                        : published || scopeChangesMap.containsKey(filePath)) {
                     editorsToUpdate.add(editor);
                 }
             }
 
             if (editorsToUpdate.isEmpty()) return;
 
+            // Fetch all base and HEAD contents in one round trip per repository before the editors fan out
+            prefetchBaseContents(editorsToUpdate, scopeChangesMap, localChangesMap);
+
             Map<String, UpdateInfo> updates = new ConcurrentHashMap<>();
             CountDownLatch latch = new CountDownLatch(editorsToUpdate.size());
 
@@ -149,19 +173,37 @@ public class MyLineStatusTrackerImpl implements Disposable {
         });
     }
 
+    private void prefetchBaseContents(List<Editor> editors, Map<String, Change> scopeChangesMap,
+                                      Map<String, Change> localChangesMap) {
+        List<ContentRevision> revisions = new ArrayList<>();
+        for (Editor editor : editors) {
+            VirtualFile file = FileDocumentManager.getInstance().getFile(editor.getDocument());
+            if (file == null) continue;
+            Change scopeChange = scopeChangesMap.get(file.getPath());
+            if (scopeChange != null && scopeChange.getBeforeRevision() != null) {
+                revisions.add(scopeChange.getBeforeRevision());
+            }
+            Change localChange = localChangesMap != null ? localChangesMap.get(file.getPath()) : null;
+            if (localChange != null && localChange.getBeforeRevision() != null) {
+                revisions.add(localChange.getBeforeRevision());
+            }
+        }
+        GitContentService.getInstance(project).prefetch(revisions);
+    }
+
     private static class UpdateInfo {
         final String filePath;
-        final String baseContent;
-        final String headContent;
+        final LineIndexedText baseText;
+        final LineIndexedText headText;
         final List<Range> precomputedRanges;
         final List<Range> scopeRanges;
         final List<Range> localRanges;
 
-        UpdateInfo(String filePath, String baseContent, String headContent,
+        UpdateInfo(String filePath, LineIndexedText baseText, LineIndexedText headText,
                    List<Range> ranges, List<Range> scopeRanges, List<Range> localRanges) {
             this.filePath = filePath;
-            this.baseContent = baseContent;
-            this.headContent = headContent;
+            this.baseText = baseText;
+            this.headText = headText;
             this.precomputedRanges = ranges;
             this.scopeRanges = scopeRanges;
             this.localRanges = localRanges;
@@ -180,53 +222,46 @@ public class MyLineStatusTrackerImpl implements Disposable {
         Change changeForFile = scopeChangesMap.get(filePath);
         boolean hasLocalChanges = (localChangesMap != null && localChangesMap.containsKey(filePath));
 
-        String baseContent;
-        String currentContent;
+        // Immutable snapshot of the document, wrapped for diffing rather than copied
+        CharSequence currentChars = ApplicationManager.getApplication().runReadAction(
+                (Computable<CharSequence>) doc::getImmutableCharSequence);
+        LineIndexedText current = LineIndexedText.of(currentChars);
+        LineIndexedText base = null;
 
         if (changeForFile != null && changeForFile.getBeforeRevision() != null) {
-            LOG.debug("MyLineStatusTrackerImpl - File: " + filePath + ", beforeRevision: " +
-                    (changeForFile.getBeforeRevision() != null ? changeForFile.getBeforeRevision().getRevisionNumber() : "null") +
-                    ", afterRevision: " +
-                    (changeForFile.getAfterRevision() != null ? changeForFile.getAfterRevision().getRevisionNumber() : "null"));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("MyLineStatusTrackerImpl - File: " + filePath + ", beforeRevision: " +
+                        changeForFile.getBeforeRevision().getRevisionNumber() +
+                        ", afterRevision: " +
+                        (changeForFile.getAfterRevision() != null ? changeForFile.getAfterRevision().getRevisionNumber() : "null"));
+            }
 
             try {
-                baseContent = changeForFile.getBeforeRevision().getContent();
+                base = GitContentService.getInstance(project).loadLineIndexed(changeForFile.getBeforeRevision());
             } catch (VcsException e) {
                 LOG.warn("Error getting content for revision: " + filePath, e);
-                baseContent = null;
             }
-
-            if (baseContent == null) {
-                baseContent = ApplicationManager.getApplication().runReadAction(
-                        (Computable<String>) () -> doc.getCharsSequence().toString());
-            }
-
-            currentContent = ApplicationManager.getApplication().runReadAction(
-                    (Computable<String>) () -> doc.getImmutableCharSequence().toString());
         } else {
-            baseContent = ApplicationManager.getApplication().runReadAction(
-                    (Computable<String>) () -> doc.getCharsSequence().toString());
-            currentContent = baseContent;
             LOG.debug("MyLineStatusTrackerImpl - File: " + filePath + ", no scope change - clearing markers");
         }
+        if (base == null) {
+            // No base: the document is its own base, i.e. no markers
+            base = current;
+        }
 
-        String normalizedBase = StringUtil.convertLineSeparators(baseContent);
-        String normalizedCurrent = StringUtil.convertLineSeparators(currentContent);
-
-        LOG.debug("MyLineStatusTrackerImpl - File: " + filePath +
-                ", normalizedBase lines: " + normalizedBase.split("\n").length +
-                ", normalizedCurrent lines: " + normalizedCurrent.split("\n").length +
-                ", hasLocalChanges: " + hasLocalChanges);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("MyLineStatusTrackerImpl - File: " + filePath +
+                    ", normalizedBase lines: " + base.getLineCount() +
+                    ", normalizedCurrent lines: " + current.getLineCount() +
+                    ", hasLocalChanges: " + hasLocalChanges);
+        }
 
-        String headContent = null;
+        LineIndexedText head = null;
         if (hasLocalChanges) {
             Change localChange = localChangesMap.get(filePath);
             if (localChange != null && localChange.getBeforeRevision() != null) {
                 try {
-                    headContent = localChange.getBeforeRevision().getContent();
-                    if (headContent != null) {
-                        headContent = StringUtil.convertLineSeparators(headContent);
-                    }
+                    head = GitContentService.getInstance(project).loadLineIndexed(localChange.getBeforeRevision());
                 } catch (VcsException e) {
                     LOG.warn("MyLineStatusTrackerImpl - Error caching HEAD content: " + e.getMessage());
                 }
@@ -237,169 +272,67 @@ public class MyLineStatusTrackerImpl implements Disposable {
         List<Range> scopeRanges = null;
         List<Range> localRanges = null;
         try {
-            if (headContent != null) {
-                ranges = computeScopeRangesInCurrentSpace(headContent, normalizedBase, normalizedCurrent, filePath);
-                scopeRanges = RangesBuilder.INSTANCE.createRanges(headContent, normalizedBase);
+            if (head != null) {
                 // Local changes = current document vs. HEAD, in current-document space. These are the
                 // markers the IDE paints in its own gutter (we exclude them from our scope painting);
                 // publish them so change navigation can also stop on them.
-                localRanges = RangesBuilder.INSTANCE.createRanges(normalizedCurrent, headContent);
+                // A missing base is the document itself, which changes with every edit; its engine is not kept
+                ThreeWayRangeEngine engine = base == current
+                        ? new ThreeWayRangeEngine(base, head) : rangeEngine(filePath, base, head);
+                ThreeWayRangeEngine.Result result = engine.compute(current);
+                scopeRanges = result.getScopeRanges();
+                localRanges = result.getLocalRanges();
+                ranges = result.getRanges();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("MyLineStatusTrackerImpl - File: " + filePath + ", scope ranges: " + scopeRanges.size()
+                            + ", local ranges: " + localRanges.size());
+                }
+            } else if (base == current) {
+                ranges = Collections.emptyList();
             } else {
-                ranges = RangesBuilder.INSTANCE.createRanges(normalizedCurrent, normalizedBase);
+                ranges = RangesBuilder.INSTANCE.createRanges(current, base);
             }
 
-            LOG.debug("MyLineStatusTrackerImpl - File: " + filePath + ", final ranges: " + ranges.size());
-            for (Range range : ranges) {
-                LOG.debug("MyLineStatusTrackerImpl - Range: line1=" + range.getLine1() + ", line2=" + range.getLine2() +
-                        ", vcsLine1=" + range.getVcsLine1() + ", vcsLine2=" + range.getVcsLine2() + ", type=" + range.getType());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("MyLineStatusTrackerImpl - File: " + filePath + ", final ranges: " + ranges.size());
+                for (Range range : ranges) {
+                    LOG.debug("MyLineStatusTrackerImpl - Range: line1=" + range.getLine1() + ", line2=" + range.getLine2() +
+                            ", vcsLine1=" + range.getVcsLine1() + ", vcsLine2=" + range.getVcsLine2() + ", type=" + range.getType());
+                }
             }
         } catch (Exception e) {
             LOG.error("Error precomputing ranges for: " + filePath, e);
             ranges = Collections.emptyList();
         }
 
-        return new UpdateInfo(filePath, normalizedBase, headContent, ranges, scopeRanges, localRanges);
+        // Base and HEAD are published with their line hashes; a base that is the document itself is copied once
+        LineIndexedText publishedBase = base == current ? LineIndexedText.of(current.toString()) : base;
+        return new UpdateInfo(filePath, publishedBase, head, ranges, scopeRanges, localRanges);
     }
 
     private void publishBatchedUpdates(List<UpdateInfo> updates) {
         for (UpdateInfo update : updates) {
             if (disposing.get()) break;
             GutterDataService.GutterFileData data = new GutterDataService.GutterFileData(
-                    update.precomputedRanges, update.baseContent, update.headContent,
+                    update.precomputedRanges, update.baseText, update.headText,
                     update.scopeRanges, update.localRanges);
             gutterDataService.publish(update.filePath, data);
             publishedFiles.add(update.filePath);
         }
     }
 
-    // --- Range computation (unchanged algorithms) ---
-
-    private List<Range> computeScopeRangesInCurrentSpace(
-            String headContent, String normalizedBase, String currentContent, String filePath) {
-
-        List<Range> scopeRanges = RangesBuilder.INSTANCE.createRanges(headContent, normalizedBase);
-        LOG.debug("computeScopeRangesInCurrentSpace [" + filePath + "] scope ranges: " + scopeRanges.size());
-        if (scopeRanges.isEmpty()) return Collections.emptyList();
-
-        List<Range> localRanges = RangesBuilder.INSTANCE.createRanges(currentContent, headContent);
-        LOG.debug("computeScopeRangesInCurrentSpace [" + filePath + "] local ranges: " + localRanges.size());
-        if (localRanges.isEmpty()) return new ArrayList<>(scopeRanges);
-
-        return mapScopeRangesToCurrentSpace(scopeRanges, localRanges, filePath);
-    }
-
-    private List<Range> mapScopeRangesToCurrentSpace(
-            List<Range> scopeRanges, List<Range> localRanges, String filePath) {
-
-        List<Range> result = new ArrayList<>();
-        int numLocals = localRanges.size();
-        int cumulativeDelta = 0;
-        int localIdx = 0;
-
-        for (Range scope : scopeRanges) {
-            int headStart = scope.getLine1();
-            int headEnd = scope.getLine2();
-            int vcsStart = scope.getVcsLine1();
-            int vcsEnd = scope.getVcsLine2();
-
-            while (localIdx < numLocals && localRanges.get(localIdx).getVcsLine2() <= headStart) {
-                Range local = localRanges.get(localIdx);
-                cumulativeDelta += (local.getLine2() - local.getLine1())
-                        - (local.getVcsLine2() - local.getVcsLine1());
-                localIdx++;
-            }
-
-            if (headStart == headEnd) {
-                boolean insideLocal = false;
-                for (int i = localIdx; i < numLocals; i++) {
-                    Range local = localRanges.get(i);
-                    if (local.getVcsLine1() > headStart) break;
-                    if (local.getVcsLine2() > headStart) { insideLocal = true; break; }
-                }
-                if (!insideLocal) {
-                    int pos = headStart + cumulativeDelta;
-                    result.add(new Range(pos, pos, vcsStart, vcsEnd));
-                    LOG.debug("mapScopeRangesToCurrentSpace [" + filePath
-                            + "] DELETED at current=" + pos + " vcs=[" + vcsStart + "-" + vcsEnd + "]");
-                }
-                continue;
-            }
-
-            int tempLocalIdx = localIdx;
-            int headCursor;
-            int currentCursor;
-
-            if (tempLocalIdx < numLocals) {
-                Range straddle = localRanges.get(tempLocalIdx);
-                if (straddle.getVcsLine1() < headStart && straddle.getVcsLine2() > headStart) {
-                    headCursor = straddle.getVcsLine2();
-                    currentCursor = straddle.getLine2();
-                    tempLocalIdx++;
-                } else {
-                    headCursor = headStart;
-                    currentCursor = headStart + cumulativeDelta;
-                }
-            } else {
-                headCursor = headStart;
-                currentCursor = headStart + cumulativeDelta;
-            }
-
-            while (headCursor < headEnd) {
-                Range nextLocal = null;
-                if (tempLocalIdx < numLocals) {
-                    Range candidate = localRanges.get(tempLocalIdx);
-                    if (candidate.getVcsLine1() < headEnd) nextLocal = candidate;
-                }
-
-                if (nextLocal != null) {
-                    int localHeadStart = nextLocal.getVcsLine1();
-                    int localHeadEnd = nextLocal.getVcsLine2();
-
-                    if (localHeadStart > headCursor) {
-                        emitScopeSegment(result, headCursor, localHeadStart, currentCursor,
-                                headStart, headEnd, vcsStart, vcsEnd, filePath);
-                        currentCursor += (localHeadStart - headCursor);
-                    }
-
-                    headCursor = Math.max(headCursor, localHeadEnd);
-                    currentCursor = nextLocal.getLine2();
-                    tempLocalIdx++;
-                } else {
-                    emitScopeSegment(result, headCursor, headEnd, currentCursor,
-                            headStart, headEnd, vcsStart, vcsEnd, filePath);
-                    headCursor = headEnd;
-                }
-            }
-        }
-
-        LOG.debug("mapScopeRangesToCurrentSpace [" + filePath
-                + "] " + scopeRanges.size() + " scope → " + result.size() + " result ranges");
-        return result;
-    }
-
-    private void emitScopeSegment(List<Range> result,
-                                  int headSegStart, int headSegEnd, int currentStart,
-                                  int headBlockStart, int headBlockEnd,
-                                  int vcsBlockStart, int vcsBlockEnd, String filePath) {
-        int currentEnd = currentStart + (headSegEnd - headSegStart);
-        int headBlockLen = headBlockEnd - headBlockStart;
-        int segVcsStart, segVcsEnd;
-
-        if (headBlockLen == 0) {
-            segVcsStart = vcsBlockStart;
-            segVcsEnd = vcsBlockEnd;
-        } else {
-            long vcsLen = vcsBlockEnd - vcsBlockStart;
-            segVcsStart = vcsBlockStart + (int) (vcsLen * (headSegStart - headBlockStart) / headBlockLen);
-            segVcsEnd = vcsBlockStart + (int) (vcsLen * (headSegEnd - headBlockStart) / headBlockLen);
-        }
-
-        if (currentStart < currentEnd || segVcsStart < segVcsEnd) {
-            result.add(new Range(currentStart, currentEnd, segVcsStart, segVcsEnd));
-            LOG.debug("emitScopeSegment [" + filePath
-                    + "] current=[" + currentStart + "-" + currentEnd
-                    + "] vcs=[" + segVcsStart + "-" + segVcsEnd + "]");
+    /**
+     * The engine aligning this base and HEAD, reused from the previous update of the file when both revisions
+     * are the same, so edits only re-diff the document against HEAD.
+     */
+    private ThreeWayRangeEngine rangeEngine(String filePath, LineIndexedText base, LineIndexedText head) {
+        ThreeWayRangeEngine engine = rangeEngines.get(filePath);
+        if (engine != null && engine.matches(base, head)) {
+            return engine;
         }
+        engine = new ThreeWayRangeEngine(base, head);
+        rangeEngines.put(filePath, engine);
+        return engine;
     }
 
     /**
@@ -415,5 +348,6 @@ public class MyLineStatusTrackerImpl implements Disposable {
 
         gutterDataService.clearAll();
         publishedFiles.clear();
+        rangeEngines.clear();
     }
 }
@@ -2,14 +2,25 @@ package listener;
 
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vcs.changes.ChangeListManager;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.newvfs.BulkFileListener;
 import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import git4idea.repo.GitRepository;
+import implementation.compare.ChangesService;
 import org.jetbrains.annotations.NotNull;
-import service.ViewService;
+import org.jetbrains.annotations.Nullable;
+import service.RefreshScheduler;
+import service.RefreshScheduler.EventKind;
+import service.RepoRootIndex;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class MyBulkFileListener implements BulkFileListener {
+    private static final String DOT_GIT = ".git";
 
     @Override
     public void after(@NotNull List<? extends VFileEvent> events) {
@@ -19,11 +30,92 @@ public class MyBulkFileListener implements BulkFileListener {
         for (Project project : openProjects) {
             if (project.isDisposed()) continue;
 
-            ViewService viewService = project.getService(ViewService.class);
-            if (viewService != null) {
-                // TODO: collectChanges: bulk file event (disabled)
-                viewService.collectChanges(true);
+            ChangesService changesService = project.getService(ChangesService.class);
+            if (changesService == null) continue;
+
+            Set<GitRepository> refRepositories = new HashSet<>();
+            Set<GitRepository> indexRepositories = new HashSet<>();
+            Set<GitRepository> workingTreeRepositories = new HashSet<>();
+            classify(project, events, refRepositories, indexRepositories, workingTreeRepositories);
+
+            RefreshScheduler scheduler = RefreshScheduler.getInstance(project);
+            if (!refRepositories.isEmpty()) {
+                // Dropped right away so no collection started in between resolves against moved refs
+                refRepositories.forEach(changesService::invalidateRefs);
+                scheduler.request(EventKind.REF_CHANGE, refRepositories);
+            }
+            if (!indexRepositories.isEmpty()) {
+                scheduler.request(EventKind.INDEX_CHANGE, indexRepositories);
+            }
+            if (!workingTreeRepositories.isEmpty()) {
+                // Only the repositories containing the touched files need to be re-collected
+                changesService.markWorkingTreeDirty(workingTreeRepositories);
+                // WORKING_TREE_CHANGE: debounced, and re-collects only these repositories
+                scheduler.request(EventKind.WORKING_TREE_CHANGE, workingTreeRepositories);
+            }
+        }
+    }
+
+    /**
+     * Sorts the repositories touched by the events by what changed: refs (HEAD, refs/, packed-refs), the index,
+     * or the working tree. Events outside the project's git roots, in the project configuration directory, in
+     * excluded directories (build output, ...) or in ignored files, as well as other files inside .git
+     * (objects, logs, ...), do not affect any scope and are dropped.
+     */
+    private static void classify(@NotNull Project project, @NotNull List<? extends VFileEvent> events,
+                                 Set<GitRepository> refRepositories,
+                                 Set<GitRepository> indexRepositories,
+                                 Set<GitRepository> workingTreeRepositories) {
+        RepoRootIndex rootIndex = RepoRootIndex.getInstance(project);
+        if (rootIndex == null) return;
+
+        String configDir = getConfigDirPrefix(project);
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        ChangeListManager changeListManager = ChangeListManager.getInstance(project);
+
+        for (VFileEvent event : events) {
+            String path = event.getPath();
+            GitRepository repo = rootIndex.getRepository(path);
+            if (repo == null) continue;
+
+            String rootPath = repo.getRoot().getPath();
+            String relativePath = path.length() > rootPath.length() ? path.substring(rootPath.length() + 1) : "";
+            if (relativePath.startsWith(DOT_GIT + "/")) {
+                String gitDirRelativePath = relativePath.substring(DOT_GIT.length() + 1);
+                if (isRefFile(gitDirRelativePath)) {
+                    refRepositories.add(repo);
+                } else if (gitDirRelativePath.equals("index")) {
+                    indexRepositories.add(repo);
+                }
+                continue;
             }
+            if (relativePath.equals(DOT_GIT) || (configDir != null && path.startsWith(configDir))) continue;
+
+            VirtualFile file = event.getFile();
+            if (file != null && file.isValid()
+                    && (fileIndex.isExcluded(file) || changeListManager.isIgnoredFile(file))) {
+                continue;
+            }
+            workingTreeRepositories.add(repo);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Path prefix of the project's .idea directory, or null for other project formats.
+     */
+    @Nullable
+    private static String getConfigDirPrefix(@NotNull Project project) {
+        VirtualFile projectFile = project.getProjectFile();
+        VirtualFile configDir = projectFile != null ? projectFile.getParent() : null;
+        if (configDir == null || !Project.DIRECTORY_STORE_FOLDER.equals(configDir.getName())) {
+            return null;
+        }
+        return configDir.getPath() + "/";
+    }
+
+    private static boolean isRefFile(@NotNull String gitDirRelativePath) {
+        return gitDirRelativePath.equals("HEAD")
+                || gitDirRelativePath.equals("packed-refs")
+                || gitDirRelativePath.startsWith("refs/");
+    }
+}
@@ -1,22 +1,73 @@
 package listener;
 
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ChangeList;
 import com.intellij.openapi.vcs.changes.ChangeListListener;
-import service.ViewService;
+import com.intellij.openapi.vcs.changes.ChangesUtil;
+import git4idea.repo.GitRepository;
+import git4idea.repo.GitRepositoryManager;
+import implementation.compare.ChangesService;
+import org.jetbrains.annotations.NotNull;
+import service.RefreshScheduler;
 import system.Defs;
 
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the repositories whose local changes were added or removed during a change list update and
+ * re-collects only those repositories once the update is done.
+ */
 public class MyChangeListListener implements ChangeListListener {
     private static final com.intellij.openapi.diagnostic.Logger LOG = Defs.getLogger(MyChangeListListener.class);
 
-    private final ViewService viewService;
+    private final Project project;
+    private final Set<GitRepository> touchedRepositories = ConcurrentHashMap.newKeySet();
+
     public MyChangeListListener(Project project) {
-        this.viewService = project.getService(ViewService.class);
+        this.project = project;
+    }
+
+    @Override
+    public void changesAdded(@NotNull Collection<? extends Change> changes, ChangeList toList) {
+        recordRepositories(changes);
+    }
+
+    @Override
+    public void changesRemoved(@NotNull Collection<? extends Change> changes, ChangeList fromList) {
+        recordRepositories(changes);
     }
 
     public void changeListUpdateDone() {
-        LOG.debug("changeListUpdateDone() called - triggering update");
-        // TODO: collectChanges: VcsTree is updated
-        viewService.incrementUpdate();
-        viewService.collectChanges(true);
+        // VFS events seen before this update were collected against a stale ChangeListManager state
+        ChangesService changesService = project.getService(ChangesService.class);
+        if (changesService != null) {
+            touchedRepositories.addAll(changesService.drainWorkingTreeDirty());
+        }
+        if (touchedRepositories.isEmpty()) {
+            LOG.debug("changeListUpdateDone() called - no repository touched, skipping update");
+            return;
+        }
+
+        Set<GitRepository> repositories = Set.copyOf(touchedRepositories);
+        touchedRepositories.removeAll(repositories);
+        LOG.debug("changeListUpdateDone() called - triggering update for " + repositories.size() + " repositories");
+        // WORKING_TREE_CHANGE: the ChangeListManager state of these repositories is final now
+        RefreshScheduler.getInstance(project).request(RefreshScheduler.EventKind.WORKING_TREE_CHANGE, repositories);
+    }
+
+    private void recordRepositories(@NotNull Collection<? extends Change> changes) {
+        if (project.isDisposed()) return;
+        GitRepositoryManager repositoryManager = GitRepositoryManager.getInstance(project);
+        for (Change change : changes) {
+            FilePath path = ChangesUtil.getFilePath(change);
+            GitRepository repo = repositoryManager.getRepositoryForFileQuick(path);
+            if (repo != null) {
+                touchedRepositories.add(repo);
+            }
+        }
     }
 }
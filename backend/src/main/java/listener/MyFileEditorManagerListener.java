@@ -4,21 +4,22 @@ import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.FileEditorManagerListener;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
-import service.ViewService;
+import service.RefreshScheduler;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+
 public class MyFileEditorManagerListener implements FileEditorManagerListener {
 
-    private final ViewService viewService;
+    private final Project project;
 
     public MyFileEditorManagerListener(Project project) {
-        this.viewService = project.getService(ViewService.class);
+        this.project = project;
     }
 
     @Override
     public void fileOpened(@NotNull FileEditorManager source, @NotNull VirtualFile vFile) {
-        // TODO: collectChanges: File Opened event
-        viewService.incrementUpdate();
-        viewService.collectChanges(false);
+        // EDITOR_OPENED: the newly opened editor needs its gutter, no repository is re-collected
+        RefreshScheduler.getInstance(project).request(RefreshScheduler.EventKind.EDITOR_OPENED, List.of());
     }
 }
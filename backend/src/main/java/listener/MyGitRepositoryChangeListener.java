@@ -4,9 +4,11 @@ import com.intellij.openapi.project.Project;
 import git4idea.repo.GitRepository;
 import git4idea.repo.GitRepositoryChangeListener;
 import org.jetbrains.annotations.NotNull;
-import service.ViewService;
+import service.RefreshScheduler;
 import system.Defs;
 
+import java.util.List;
+
 /**
  * Listens to Git repository changes (branches, tags, HEAD changes, remote updates).
  * This complements MyChangeListListener which only triggers on working tree changes.
@@ -16,21 +18,24 @@ import system.Defs;
  * - New branches being created/deleted
  * - Branch checkouts
  * - Remote reference updates (fetch/pull)
+ *
+ * Only the repository named in the event is invalidated; all other repositories keep their cached changes.
  */
 public class MyGitRepositoryChangeListener implements GitRepositoryChangeListener {
     private static final com.intellij.openapi.diagnostic.Logger LOG = Defs.getLogger(MyGitRepositoryChangeListener.class);
 
-    private final ViewService viewService;
+    private final Project project;
 
     public MyGitRepositoryChangeListener(Project project) {
-        this.viewService = project.getService(ViewService.class);
+        this.project = project;
     }
 
     @Override
     public void repositoryChanged(@NotNull GitRepository repository) {
         LOG.debug("repositoryChanged() called for repository: " + repository.getRoot().getName());
 
-        // TODO: collectChanges: repository changed (branches, tags, HEAD, remotes updated)
-        viewService.collectChanges(true);
+        // Refs may have moved; resolved refs and cached changes of other repositories stay valid
+        // REF_CHANGE: branches, tags, HEAD or remotes of this repository were updated
+        RefreshScheduler.getInstance(project).request(RefreshScheduler.EventKind.REF_CHANGE, List.of(repository));
     }
 }
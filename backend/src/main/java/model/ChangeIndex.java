@@ -0,0 +1,322 @@
+package model;
+
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.util.containers.Interner;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable, compact index of the changes of one tab: merged (scope + local), scope-only and local-only
+ * changes share a single sorted table of file paths and one change per path. Bitsets mark which paths belong
+ * to which set; the rare path whose scope or local change differs from its merged change is kept in a small
+ * sorted side table. Path strings are interned, so tabs over the same files share them.
+ * <p>
+ * The collection and map views are read-only; lookups by path are binary searches (O(log n)).
+ */
+public final class ChangeIndex {
+
+    public static final ChangeIndex EMPTY = new ChangeIndex(new String[0], new Change[0],
+            new BitSet(), new BitSet(), new BitSet(), Overrides.NONE, Overrides.NONE, null);
+
+    // Paths are shared across tabs and projects; weakly held so closed tabs do not pin them
+    private static final Interner<String> PATH_INTERNER = Interner.createWeakInterner();
+
+    private final String[] paths;
+    // Merged change per path; the scope or local change when the path is not part of the merged set
+    private final Change[] changes;
+
+    private final Collection<Change> mergedChanges;
+    private final Collection<Change> scopeChanges;
+    private final Collection<Change> localChanges;
+    private final Map<String, Change> mergedMap;
+    private final Map<String, Change> scopeMap;
+    private final Map<String, Change> localMap;
+
+    private ChangeIndex(String[] paths, Change[] changes, BitSet merged, BitSet scope, BitSet local,
+                        Overrides scopeOverrides, Overrides localOverrides, @Nullable Collection<Change> mergedMarker) {
+        this.paths = paths;
+        this.changes = changes;
+        // The marker (e.g. the error state) replaces the merged changes so consumers checking for it keep working
+        this.mergedChanges = mergedMarker != null ? mergedMarker : new ChangesView(merged, Overrides.NONE);
+        this.scopeChanges = new ChangesView(scope, scopeOverrides);
+        this.localChanges = new ChangesView(local, localOverrides);
+        this.mergedMap = new PathMap(merged, Overrides.NONE);
+        this.scopeMap = new PathMap(scope, scopeOverrides);
+        this.localMap = new PathMap(local, localOverrides);
+    }
+
+    /**
+     * Builds the index from path-keyed maps (as produced while merging repository results). Must not run on
+     * the EDT for large scopes: it sorts all paths.
+     */
+    @NotNull
+    public static ChangeIndex of(@NotNull Map<String, Change> mergedByPath, @NotNull Map<String, Change> scopeByPath,
+                                 @NotNull Map<String, Change> localByPath) {
+        Set<String> allPaths = new HashSet<>(mergedByPath.keySet());
+        allPaths.addAll(scopeByPath.keySet());
+        allPaths.addAll(localByPath.keySet());
+        if (allPaths.isEmpty()) {
+            return EMPTY;
+        }
+
+        String[] paths = allPaths.toArray(new String[0]);
+        Arrays.sort(paths);
+        synchronized (PATH_INTERNER) {
+            for (int i = 0; i < paths.length; i++) {
+                paths[i] = PATH_INTERNER.intern(paths[i]);
+            }
+        }
+
+        Change[] changes = new Change[paths.length];
+        BitSet merged = new BitSet(paths.length);
+        BitSet scope = new BitSet(paths.length);
+        BitSet local = new BitSet(paths.length);
+        Overrides.Builder scopeOverrides = new Overrides.Builder();
+        Overrides.Builder localOverrides = new Overrides.Builder();
+        for (int i = 0; i < paths.length; i++) {
+            Change mergedChange = mergedByPath.get(paths[i]);
+            Change scopeChange = scopeByPath.get(paths[i]);
+            Change localChange = localByPath.get(paths[i]);
+            Change primary = mergedChange != null ? mergedChange : scopeChange != null ? scopeChange : localChange;
+            changes[i] = primary;
+            if (mergedChange != null) {
+                merged.set(i);
+            }
+            if (scopeChange != null) {
+                scope.set(i);
+                if (scopeChange != primary) {
+                    scopeOverrides.add(i, scopeChange);
+                }
+            }
+            if (localChange != null) {
+                local.set(i);
+                if (localChange != primary) {
+                    localOverrides.add(i, localChange);
+                }
+            }
+        }
+        return new ChangeIndex(paths, changes, merged, scope, local,
+                scopeOverrides.build(), localOverrides.build(), null);
+    }
+
+    /**
+     * An empty index whose merged changes are the given marker collection, e.g.
+     * {@code ChangesService.ERROR_STATE}, so that consumers checking for the marker keep working.
+     */
+    @NotNull
+    public static ChangeIndex ofMarker(@NotNull Collection<Change> marker) {
+        return new ChangeIndex(new String[0], new Change[0], new BitSet(), new BitSet(), new BitSet(),
+                Overrides.NONE, Overrides.NONE, marker);
+    }
+
+    /**
+     * Merged changes (scope + local), ordered by path.
+     */
+    @NotNull
+    public Collection<Change> mergedChanges() {
+        return mergedChanges;
+    }
+
+    @NotNull
+    public Collection<Change> scopeChanges() {
+        return scopeChanges;
+    }
+
+    @NotNull
+    public Collection<Change> localChanges() {
+        return localChanges;
+    }
+
+    @NotNull
+    public Map<String, Change> mergedMap() {
+        return mergedMap;
+    }
+
+    @NotNull
+    public Map<String, Change> scopeMap() {
+        return scopeMap;
+    }
+
+    @NotNull
+    public Map<String, Change> localMap() {
+        return localMap;
+    }
+
+    private int indexOf(Object path) {
+        return path instanceof String ? Arrays.binarySearch(paths, path) : -1;
+    }
+
+    private Change changeAt(int i, Overrides overrides) {
+        Change override = overrides.get(i);
+        return override != null ? override : changes[i];
+    }
+
+    /**
+     * Changes that differ from the primary change of their path, as parallel arrays sorted by path index.
+     */
+    private static final class Overrides {
+        static final Overrides NONE = new Overrides(new int[0], new Change[0]);
+
+        private final int[] indices;
+        private final Change[] changes;
+
+        private Overrides(int[] indices, Change[] changes) {
+            this.indices = indices;
+            this.changes = changes;
+        }
+
+        @Nullable
+        Change get(int index) {
+            if (indices.length == 0) {
+                return null;
+            }
+            int i = Arrays.binarySearch(indices, index);
+            return i >= 0 ? changes[i] : null;
+        }
+
+        private static final class Builder {
+            private int[] indices = new int[0];
+            private Change[] changes = new Change[0];
+            private int size;
+
+            void add(int index, Change change) {
+                if (size == indices.length) {
+                    int capacity = Math.max(4, size * 2);
+                    indices = Arrays.copyOf(indices, capacity);
+                    changes = Arrays.copyOf(changes, capacity);
+                }
+                indices[size] = index;
+                changes[size] = change;
+                size++;
+            }
+
+            Overrides build() {
+                return size == 0 ? NONE : new Overrides(Arrays.copyOf(indices, size), Arrays.copyOf(changes, size));
+            }
+        }
+    }
+
+    private abstract class MemberIterator<T> implements Iterator<T> {
+        private final BitSet members;
+        private int next;
+
+        MemberIterator(BitSet members) {
+            this.members = members;
+            this.next = members.nextSetBit(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public T next() {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            int current = next;
+            next = members.nextSetBit(current + 1);
+            return at(current);
+        }
+
+        abstract T at(int index);
+    }
+
+    private final class ChangesView extends AbstractCollection<Change> {
+        private final BitSet members;
+        private final Overrides overrides;
+        private final int size;
+
+        ChangesView(BitSet members, Overrides overrides) {
+            this.members = members;
+            this.overrides = overrides;
+            this.size = members.cardinality();
+        }
+
+        @Override
+        public @NotNull Iterator<Change> iterator() {
+            return new MemberIterator<>(members) {
+                @Override
+                Change at(int index) {
+                    return changeAt(index, overrides);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private final class PathMap extends AbstractMap<String, Change> {
+        private final BitSet members;
+        private final Overrides overrides;
+        private final int size;
+        private Set<Entry<String, Change>> entrySet;
+
+        PathMap(BitSet members, Overrides overrides) {
+            this.members = members;
+            this.overrides = overrides;
+            this.size = members.cardinality();
+        }
+
+        @Override
+        public Change get(Object key) {
+            int i = indexOf(key);
+            return i >= 0 && members.get(i) ? changeAt(i, overrides) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            int i = indexOf(key);
+            return i >= 0 && members.get(i);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public @NotNull Set<Entry<String, Change>> entrySet() {
+            if (entrySet == null) {
+                entrySet = new AbstractSet<>() {
+                    @Override
+                    public @NotNull Iterator<Entry<String, Change>> iterator() {
+                        return new MemberIterator<>(members) {
+                            @Override
+                            Entry<String, Change> at(int index) {
+                                return new SimpleImmutableEntry<>(paths[index], changeAt(index, overrides));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+            return entrySet;
+        }
+    }
+}
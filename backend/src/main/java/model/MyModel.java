@@ -1,13 +1,11 @@
 package model;
 
 import com.intellij.openapi.vcs.changes.Change;
-import com.intellij.openapi.vcs.changes.ChangesUtil;
 import git4idea.repo.GitRepository;
 import org.jetbrains.annotations.Nullable;
 import service.GitService;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -16,12 +14,8 @@ import java.util.function.Consumer;
 public class MyModel extends MyModelBase {
     private final List<Consumer<MyModel.field>> listeners = new CopyOnWriteArrayList<>();
     private final boolean isHeadTab;
-    private Collection<Change> changes; // Merged changes (scope + local)
-    private Collection<Change> scopeChanges; // Scope changes only (from target branch comparison)
-    private Collection<Change> localChanges; // Local changes towards HEAD only
-    private Map<String, Change> changesMap; // Cached map of changes by file path
-    private Map<String, Change> scopeChangesMap; // Cached map of scope changes by file path
-    private Map<String, Change> localChangesMap; // Cached map of local changes by file path
+    private ChangeIndex changeIndex; // Merged, scope and local changes with their path lookups; null until collected
+    private String changesFingerprint; // State the change index was collected from; null if unknown
     private boolean isActive;
     private String customTabName; // Added field for custom tab name
 
@@ -102,93 +96,58 @@ public class MyModel extends MyModelBase {
         notifyListeners(field.tabName);
     }
 
+    /**
+     * Merged changes (scope + local), or null if not collected yet.
+     */
     public Collection<Change> getChanges() {
-        return changes;
-    }
-
-    public void setChanges(Collection<Change> changes) {
-        this.changes = changes;
-        this.changesMap = buildChangesByPathMap(changes);
-        notifyListeners(field.changes);
+        return changeIndex == null ? null : changeIndex.mergedChanges();
     }
 
     /**
-     * Sets changes with a pre-built map to avoid file system access on EDT.
-     * Use this when the map is already computed on a background thread.
+     * Scope changes only (from target branch comparison), or null if not collected yet.
      */
-    public void setChangesWithMap(Collection<Change> changes, Map<String, Change> changesMap) {
-        this.changes = changes;
-        this.changesMap = changesMap;
-        notifyListeners(field.changes);
-    }
-
     public Collection<Change> getScopeChanges() {
-        return scopeChanges;
-    }
-
-    public void setScopeChanges(Collection<Change> scopeChanges) {
-        this.scopeChanges = scopeChanges;
-        this.scopeChangesMap = buildChangesByPathMap(scopeChanges);
+        return changeIndex == null ? null : changeIndex.scopeChanges();
     }
 
     /**
-     * Sets scope changes with a pre-built map to avoid file system access on EDT.
-     * Use this when the map is already computed on a background thread.
+     * Local changes towards HEAD only, or null if not collected yet.
      */
-    public void setScopeChangesWithMap(Collection<Change> scopeChanges, Map<String, Change> scopeChangesMap) {
-        this.scopeChanges = scopeChanges;
-        this.scopeChangesMap = scopeChangesMap;
+    public Collection<Change> getLocalChanges() {
+        return changeIndex == null ? null : changeIndex.localChanges();
     }
 
-    public Collection<Change> getLocalChanges() {
-        return localChanges;
+    public ChangeIndex getChangeIndex() {
+        return changeIndex;
     }
 
-    public void setLocalChanges(Collection<Change> localChanges) {
-        this.localChanges = localChanges;
-        this.localChangesMap = buildChangesByPathMap(localChanges);
+    /**
+     * Fingerprint of the repository state the current changes were collected from, or null if unknown.
+     */
+    @Nullable
+    public String getChangesFingerprint() {
+        return changesFingerprint;
     }
 
     /**
-     * Sets local changes with a pre-built map to avoid file system access on EDT.
-     * Use this when the map is already computed on a background thread.
+     * Replaces all changes at once with an index built on a background thread.
      */
-    public void setLocalChangesWithMap(Collection<Change> localChanges, Map<String, Change> localChangesMap) {
-        this.localChanges = localChanges;
-        this.localChangesMap = localChangesMap;
+    public void setChangeIndex(ChangeIndex changeIndex, @Nullable String fingerprint) {
+        this.changeIndex = changeIndex;
+        this.changesFingerprint = fingerprint;
+        notifyListeners(field.changes);
     }
 
     public Map<String, Change> getChangesMap() {
-        return changesMap;
+        return changeIndex == null ? null : changeIndex.mergedMap();
     }
 
     public Map<String, Change> getScopeChangesMap() {
-        return scopeChangesMap;
+        return changeIndex == null ? null : changeIndex.scopeMap();
     }
 
     public Map<String, Change> getLocalChangesMap() {
-        return localChangesMap;
-    }
-
-    /**
-     * Helper method to build a HashMap from a collection of changes indexed by file path.
-     * This provides O(1) lookup performance for file status checks.
-     * Uses ChangesUtil.getFilePath() to properly handle deleted files (where getVirtualFile() is null).
-     *
-     * @param changes Collection of changes to convert to a map
-     * @return Map of file path to Change, or null if changes is null
-     */
-    public static Map<String, Change> buildChangesByPathMap(Collection<Change> changes) {
-        if (changes == null) {
-            return null;
-        }
-
-        Map<String, Change> changeMap = new HashMap<>();
-        for (Change change : changes) {
-            String path = ChangesUtil.getFilePath(change).getPath();
-            changeMap.put(path, change);
-        }
-        return changeMap;
+        return changeIndex == null ? null : changeIndex.localMap();
     }
 
     public void addListener(Consumer<field> listener) {
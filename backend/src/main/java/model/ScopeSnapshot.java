@@ -0,0 +1,40 @@
+package model;
+
+import com.intellij.openapi.vcs.FileStatus;
+import com.intellij.openapi.vcs.changes.Change;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * Immutable view of what the selected tab currently shows: its changes with their path lookups, the scope
+ * (target ref per repository root) and the state the changes were collected from. {@code ViewService}
+ * publishes a new snapshot through a single volatile write whenever the selected tab or its changes change,
+ * so file colors, navigation and gutters read a consistent state from any thread without locks or EDT work.
+ *
+ * @param version     Increases with every published snapshot
+ * @param displayName User-facing name of the tab
+ * @param targetRefs  Target ref per repository root; empty for HEAD
+ * @param fingerprint Repository state the changes were collected from (HEAD and resolved target SHAs per root,
+ *                    local changes); null if not collected yet or unknown
+ * @param index       Merged, scope-only and local-only changes
+ */
+public record ScopeSnapshot(long version, @NotNull String displayName, @NotNull Map<String, String> targetRefs,
+                            @Nullable String fingerprint, @NotNull ChangeIndex index) {
+
+    public static final ScopeSnapshot EMPTY = new ScopeSnapshot(0, "", Map.of(), null, ChangeIndex.EMPTY);
+
+    public ScopeSnapshot {
+        targetRefs = Map.copyOf(targetRefs);
+    }
+
+    /**
+     * Status the scope gives a file (from its scope change), or null if the file is not changed in the scope.
+     */
+    @Nullable
+    public FileStatus scopeStatus(@NotNull String path) {
+        Change change = index.scopeMap().get(path);
+        return change != null ? change.getFileStatus() : null;
+    }
+}
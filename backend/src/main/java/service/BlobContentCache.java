@@ -0,0 +1,158 @@
+package service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.LowMemoryWatcher;
+import implementation.gutter.LineIndexedText;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import settings.GitScopeSettings;
+import system.Defs;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Application-wide cache of committed file contents keyed by git object name: a blob SHA, or
+ * {@code <commit sha>:<path>} when the blob is not known. Both are immutable, so entries never go stale and
+ * are shared by all tabs and projects. Contents are kept as the raw bytes git stores (usually UTF-8 or
+ * Latin-1). Decoded, line-indexed texts of the files shown in editors ({@link #getIndexed}) are kept alongside
+ * and count against the same byte budget ({@link GitScopeSettings#getBaseContentCacheMb()}); they are evicted
+ * first, since they are rebuilt from the bytes without git. Least recently used entries are evicted once the
+ * budget is exceeded; the whole cache is dropped on low memory.
+ */
+public class BlobContentCache implements Disposable {
+    private static final Logger LOG = Defs.getLogger(BlobContentCache.class);
+
+    // Map entry, key string and array header
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, LineIndexedText> indexedEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private long maxBytes;
+
+    public BlobContentCache() {
+        this.maxBytes = GitScopeSettings.getInstance().getBaseContentCacheMb() * 1024L * 1024L;
+        LowMemoryWatcher.register(this::clear, this);
+    }
+
+    public static BlobContentCache getInstance() {
+        return ApplicationManager.getApplication().getService(BlobContentCache.class);
+    }
+
+    /**
+     * Whether {@code object} names immutable content and may be cached: a full SHA, optionally followed by
+     * {@code :<path>}. Symbolic revisions (branch names, HEAD) can move and are never cached.
+     */
+    public static boolean isCacheable(@NotNull String object) {
+        int colon = object.indexOf(':');
+        int shaLength = colon < 0 ? object.length() : colon;
+        if (shaLength != 40 && shaLength != 64) {
+            return false;
+        }
+        for (int i = 0; i < shaLength; i++) {
+            char c = object.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized byte @Nullable [] get(@NotNull String object) {
+        return entries.get(object);
+    }
+
+    public synchronized void put(@NotNull String object, byte @NotNull [] content) {
+        long size = sizeOf(object, content);
+        if (size > maxBytes / 4) {
+            // One huge file would evict most of the cache; it is cheaper to read it again
+            return;
+        }
+        byte[] previous = entries.put(object, content);
+        if (previous != null) {
+            totalBytes -= sizeOf(object, previous);
+        }
+        totalBytes += size;
+        evict(object);
+    }
+
+    /**
+     * Decoded text cached under {@code key} by {@link #putIndexed}, or null.
+     */
+    public synchronized @Nullable LineIndexedText getIndexed(@NotNull String key) {
+        return indexedEntries.get(key);
+    }
+
+    /**
+     * Caches the decoded text of an immutable object; {@code key} must identify the object and how it was
+     * decoded (e.g. repository root and object name).
+     */
+    public synchronized void putIndexed(@NotNull String key, @NotNull LineIndexedText text) {
+        long size = sizeOf(key, text);
+        if (size > maxBytes / 4) {
+            return;
+        }
+        LineIndexedText previous = indexedEntries.put(key, text);
+        if (previous != null) {
+            totalBytes -= sizeOf(key, previous);
+        }
+        totalBytes += size;
+        evict(key);
+    }
+
+    /**
+     * Applies a new byte budget, evicting right away if the cache is larger.
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evict(null);
+    }
+
+    public synchronized void clear() {
+        if (!entries.isEmpty()) {
+            LOG.debug("BlobContentCache - dropping " + entries.size() + " entries (" + totalBytes + " bytes)");
+        }
+        entries.clear();
+        indexedEntries.clear();
+        totalBytes = 0;
+    }
+
+    private void evict(@Nullable String keep) {
+        Iterator<Map.Entry<String, LineIndexedText>> indexed = indexedEntries.entrySet().iterator();
+        while (totalBytes > maxBytes && indexed.hasNext()) {
+            Map.Entry<String, LineIndexedText> eldest = indexed.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            totalBytes -= sizeOf(eldest.getKey(), eldest.getValue());
+            indexed.remove();
+        }
+        Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, byte[]> eldest = it.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            totalBytes -= sizeOf(eldest.getKey(), eldest.getValue());
+            it.remove();
+        }
+    }
+
+    private static long sizeOf(String object, byte[] content) {
+        return ENTRY_OVERHEAD_BYTES + object.length() + content.length;
+    }
+
+    private static long sizeOf(String key, LineIndexedText text) {
+        // UTF-16 chars (at worst) plus the line start and line hash arrays
+        return ENTRY_OVERHEAD_BYTES + key.length() + 2L * text.length() + 8L * text.getLineCount();
+    }
+
+    @Override
+    public void dispose() {
+        clear();
+    }
+}
@@ -7,13 +7,14 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Computable;
-import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import implementation.gutter.LineIndexedText;
 import implementation.gutter.Range;
 import implementation.gutter.RangesBuilder;
+import model.ScopeSnapshot;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import rpc.ChangeNavDirection;
@@ -72,10 +73,10 @@ public final class ChangeNavigationService {
         ViewService viewService = project.getService(ViewService.class);
         if (viewService == null) return;
 
-        Map<String, Change> scopeChanges = viewService.getScopeChangesMap();
-        Map<String, Change> localChanges = viewService.getLocalChangesTowardsHeadMap();
-        if (scopeChanges == null) scopeChanges = Collections.emptyMap();
-        if (localChanges == null) localChanges = Collections.emptyMap();
+        // One snapshot for the whole navigation, so scope and local changes are consistent
+        ScopeSnapshot snapshot = viewService.getSnapshot();
+        Map<String, Change> scopeChanges = snapshot.index().scopeMap();
+        Map<String, Change> localChanges = snapshot.index().localMap();
         if (scopeChanges.isEmpty() && localChanges.isEmpty()) {
             LOG.debug("ChangeNavigation: no scope or local changes");
             return;
@@ -118,8 +119,9 @@ public final class ChangeNavigationService {
         ViewService viewService = project.getService(ViewService.class);
         if (viewService == null) return;
 
-        Map<String, Change> scopeChanges = viewService.getScopeChangesMap();
-        if (scopeChanges == null || scopeChanges.isEmpty()) {
+        ScopeSnapshot snapshot = viewService.getSnapshot();
+        Map<String, Change> scopeChanges = snapshot.index().scopeMap();
+        if (scopeChanges.isEmpty()) {
             LOG.debug("ShowDiff: no scope changes");
             return;
         }
@@ -132,7 +134,7 @@ public final class ChangeNavigationService {
         Change change = scopeChanges.get(targetPath);
         if (change == null) return;
 
-        String scopeName = scopeDisplayName(viewService);
+        String scopeName = snapshot.displayName();
         final String path = targetPath;
         final String signature = changeSignature(change);
         ApplicationManager.getApplication().invokeLater(() -> {
@@ -196,15 +198,6 @@ public final class ChangeNavigationService {
         return null;
     }
 
-    private String scopeDisplayName(ViewService viewService) {
-        try {
-            model.MyModel m = viewService.getCurrent();
-            if (m != null) return m.getDisplayName();
-        } catch (Exception ignored) {
-        }
-        return "";
-    }
-
     // --- Change-level navigation (within a file, crossing file boundaries at the ends) ---
 
     private void navigateChange(List<String> files, Map<String, Change> scopeChanges,
@@ -317,16 +310,16 @@ public final class ChangeNavigationService {
 
         // No cached gutter data (file not open): compute scope and local ranges on demand.
         VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
-        String currentContent = file == null ? null : ApplicationManager.getApplication().runReadAction(
-                (Computable<String>) () -> {
+        CharSequence currentContent = file == null ? null : ApplicationManager.getApplication().runReadAction(
+                (Computable<CharSequence>) () -> {
                     Document doc = FileDocumentManager.getInstance().getDocument(file);
-                    return doc != null ? doc.getImmutableCharSequence().toString() : null;
+                    return doc != null ? doc.getImmutableCharSequence() : null;
                 });
         if (currentContent == null) return new ArrayList<>(lines);
-        String normalizedCurrent = StringUtil.convertLineSeparators(currentContent);
+        LineIndexedText current = LineIndexedText.of(currentContent);
 
-        for (Range r : computeRanges(path, scopeChange, normalizedCurrent)) lines.add(r.getLine1());
-        for (Range r : computeRanges(path, localChange, normalizedCurrent)) lines.add(r.getLine1());
+        for (Range r : computeRanges(path, scopeChange, current)) lines.add(r.getLine1());
+        for (Range r : computeRanges(path, localChange, current)) lines.add(r.getLine1());
         return new ArrayList<>(lines);
     }
 
@@ -334,21 +327,20 @@ public final class ChangeNavigationService {
      * Computes change ranges (before-revision vs. current content) for a file not covered by cached
      * gutter data. Returns ranges in current-document coordinate space (line1/line2 are current-side).
      */
-    private List<Range> computeRanges(String path, @Nullable Change change, String normalizedCurrent) {
+    private List<Range> computeRanges(String path, @Nullable Change change, LineIndexedText current) {
         if (change == null || change.getBeforeRevision() == null) return Collections.emptyList();
 
         String baseContent;
         try {
-            baseContent = change.getBeforeRevision().getContent();
+            baseContent = GitContentService.getInstance(project).loadText(change.getBeforeRevision());
         } catch (VcsException e) {
             LOG.warn("ChangeNavigation: error getting base content for " + path, e);
             return Collections.emptyList();
         }
         if (baseContent == null) return Collections.emptyList();
 
-        String normalizedBase = StringUtil.convertLineSeparators(baseContent);
         try {
-            return RangesBuilder.INSTANCE.createRanges(normalizedCurrent, normalizedBase);
+            return RangesBuilder.INSTANCE.createRanges(current, LineIndexedText.of(baseContent));
         } catch (Exception e) {
             LOG.warn("ChangeNavigation: error computing ranges for " + path, e);
             return Collections.emptyList();
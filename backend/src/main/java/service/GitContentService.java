@@ -0,0 +1,293 @@
+package service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.vcsUtil.VcsImplUtil;
+import git4idea.commands.GitBinaryHandler;
+import git4idea.commands.GitCommand;
+import git4idea.repo.GitRepository;
+import implementation.gutter.LineIndexedText;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import system.Defs;
+import utils.GitBlobContentRevision;
+import utils.GitCatFileBatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads file contents of committed revisions (scope base revisions, HEAD) through pooled
+ * {@link GitCatFileBatch} processes, one small pool per repository root. Gutters, navigation and diffs thus
+ * share a few long-lived git processes instead of spawning one {@code git show} per file. Contents are kept in
+ * the application-wide {@link BlobContentCache}. Idle processes are closed after {@link #IDLE_TIMEOUT_MS}.
+ * With a non-local git executable (WSL) contents are loaded through git4idea's handlers instead.
+ */
+public class GitContentService implements Disposable {
+    private static final Logger LOG = Defs.getLogger(GitContentService.class);
+
+    // Concurrent callers of the same root each get their own process; only this many are kept when idle
+    private static final int MAX_IDLE_PER_ROOT = 2;
+    private static final long IDLE_TIMEOUT_MS = 60_000;
+
+    private final Project project;
+    // Guarded by this
+    private final Map<String, Deque<GitCatFileBatch>> idleByRoot = new HashMap<>();
+    private boolean disposed;
+    private final ScheduledFuture<?> idleReaper;
+
+    public GitContentService(Project project) {
+        this.project = project;
+        this.idleReaper = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                this::closeIdle, IDLE_TIMEOUT_MS, IDLE_TIMEOUT_MS / 2, TimeUnit.MILLISECONDS);
+    }
+
+    public static GitContentService getInstance(@NotNull Project project) {
+        return project.getService(GitContentService.class);
+    }
+
+    /**
+     * Content of one object ({@code <blob sha>} or {@code <rev>:<path relative to root>}), or null if git does
+     * not know it.
+     */
+    public byte @Nullable [] load(@NotNull VirtualFile root, @NotNull String object) throws VcsException {
+        return loadAll(root, List.of(object)).get(object);
+    }
+
+    /**
+     * Contents of several objects of one repository, fetched in a single pipelined round trip. Unknown objects
+     * are missing from the result. Honours the current progress indicator.
+     */
+    @NotNull
+    public Map<String, byte[]> loadAll(@NotNull VirtualFile root, @NotNull Collection<String> objects) throws VcsException {
+        BlobContentCache cache = BlobContentCache.getInstance();
+        Map<String, byte[]> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String object : new LinkedHashSet<>(objects)) {
+            byte[] cached = cache.get(object);
+            if (cached != null) {
+                result.put(object, cached);
+            } else {
+                missing.add(object);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        if (!GitCatFileBatch.isSupported(project)) {
+            loadThroughHandler(root, missing, result);
+            return result;
+        }
+
+        GitCatFileBatch batch = borrow(root);
+        try {
+            List<byte[]> contents = batch.read(missing);
+            for (int i = 0; i < missing.size(); i++) {
+                byte[] content = contents.get(i);
+                if (content != null) {
+                    result.put(missing.get(i), content);
+                    if (BlobContentCache.isCacheable(missing.get(i))) {
+                        cache.put(missing.get(i), content);
+                    }
+                }
+            }
+        } finally {
+            release(root, batch);
+        }
+        return result;
+    }
+
+    /**
+     * Loads objects one by one through git4idea's handler, which runs non-local executables (WSL) with their
+     * path translation and environment. Objects git does not know are left out.
+     */
+    private void loadThroughHandler(VirtualFile root, List<String> objects, Map<String, byte[]> result) {
+        BlobContentCache cache = BlobContentCache.getInstance();
+        for (String object : objects) {
+            ProgressManager.checkCanceled();
+            GitBinaryHandler handler = new GitBinaryHandler(project, root, GitCommand.CAT_FILE);
+            handler.addParameters("-p", object);
+            try {
+                byte[] content = handler.run();
+                result.put(object, content);
+                if (BlobContentCache.isCacheable(object)) {
+                    cache.put(object, content);
+                }
+            } catch (VcsException e) {
+                LOG.debug("GitContentService - could not load " + object + " in " + root.getPath() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Text of a committed revision. Git revisions (scope base revisions and the HEAD revisions of local changes)
+     * are served from {@link BlobContentCache} or read through the pooled processes; anything else falls back
+     * to {@link ContentRevision#getContent()}.
+     */
+    @Nullable
+    public String loadText(@NotNull ContentRevision revision) throws VcsException {
+        if (revision instanceof GitBlobContentRevision blobRevision) {
+            return blobRevision.getContent();
+        }
+        ObjectRef ref = objectRef(revision);
+        if (ref != null) {
+            byte[] bytes = load(ref.root(), ref.object());
+            if (bytes != null) {
+                return VcsImplUtil.loadTextFromBytes(project, bytes, revision.getFile());
+            }
+        }
+        return revision.getContent();
+    }
+
+    /**
+     * Like {@link #loadText}, as a {@link LineIndexedText}. Texts of immutable git revisions are kept in
+     * {@link BlobContentCache}, within its byte budget, so the line index and line hashes of a scope base or
+     * HEAD revision are built once and reused by every gutter recompute of the file rather than once per
+     * recompute.
+     */
+    @Nullable
+    public LineIndexedText loadLineIndexed(@NotNull ContentRevision revision) throws VcsException {
+        ObjectRef ref = objectRef(revision);
+        // Decoding depends on the project's encodings, so the root is part of the key
+        String key = ref != null && BlobContentCache.isCacheable(ref.object())
+                ? ref.root().getPath() + "|" + ref.object() : null;
+        if (key != null) {
+            LineIndexedText cached = BlobContentCache.getInstance().getIndexed(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        String text = loadText(revision);
+        if (text == null) {
+            return null;
+        }
+        LineIndexedText indexed = LineIndexedText.of(text);
+        if (key != null) {
+            BlobContentCache.getInstance().putIndexed(key, indexed);
+        }
+        return indexed;
+    }
+
+    /**
+     * Loads the given revisions into {@link BlobContentCache} with one pipelined round trip per repository,
+     * so that subsequent {@link #loadText} calls for them do not have to wait for git.
+     */
+    public void prefetch(@NotNull Collection<? extends ContentRevision> revisions) {
+        Map<VirtualFile, List<String>> objectsByRoot = new HashMap<>();
+        for (ContentRevision revision : revisions) {
+            ObjectRef ref = objectRef(revision);
+            if (ref != null && BlobContentCache.isCacheable(ref.object())) {
+                objectsByRoot.computeIfAbsent(ref.root(), __ -> new ArrayList<>()).add(ref.object());
+            }
+        }
+        for (Map.Entry<VirtualFile, List<String>> entry : objectsByRoot.entrySet()) {
+            try {
+                loadAll(entry.getKey(), entry.getValue());
+            } catch (VcsException e) {
+                LOG.debug("GitContentService - prefetch failed in " + entry.getKey().getPath() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private record ObjectRef(VirtualFile root, String object) {}
+
+    @Nullable
+    private ObjectRef objectRef(@NotNull ContentRevision revision) {
+        if (revision instanceof GitBlobContentRevision blobRevision) {
+            return new ObjectRef(blobRevision.getRoot(), blobRevision.getObject());
+        }
+        String revisionNumber = revision.getRevisionNumber().asString();
+        if (!BlobContentCache.isCacheable(revisionNumber)) {
+            return null;
+        }
+        GitRepository repo = RepoRootIndex.getInstance(project).getRepository(revision.getFile().getPath());
+        if (repo == null) {
+            return null;
+        }
+        String rootPath = repo.getRoot().getPath();
+        String path = revision.getFile().getPath();
+        if (!path.startsWith(rootPath + "/")) {
+            return null;
+        }
+        return new ObjectRef(repo.getRoot(), revisionNumber + ":" + path.substring(rootPath.length() + 1));
+    }
+
+    private GitCatFileBatch borrow(VirtualFile root) throws VcsException {
+        synchronized (this) {
+            if (disposed) {
+                throw new VcsException("Project is closing");
+            }
+            Deque<GitCatFileBatch> idle = idleByRoot.get(root.getPath());
+            while (idle != null && !idle.isEmpty()) {
+                GitCatFileBatch batch = idle.pollFirst();
+                if (batch.isAlive()) {
+                    return batch;
+                }
+            }
+        }
+        LOG.debug("GitContentService - starting git cat-file --batch in " + root.getPath());
+        return GitCatFileBatch.start(project, root);
+    }
+
+    private void release(VirtualFile root, GitCatFileBatch batch) {
+        synchronized (this) {
+            if (!disposed && batch.isAlive()) {
+                Deque<GitCatFileBatch> idle = idleByRoot.computeIfAbsent(root.getPath(), __ -> new ArrayDeque<>());
+                if (idle.size() < MAX_IDLE_PER_ROOT) {
+                    idle.addFirst(batch);
+                    return;
+                }
+            }
+        }
+        batch.close();
+    }
+
+    private void closeIdle() {
+        long now = System.currentTimeMillis();
+        List<GitCatFileBatch> expired = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Deque<GitCatFileBatch>> roots = idleByRoot.values().iterator(); roots.hasNext(); ) {
+                Deque<GitCatFileBatch> idle = roots.next();
+                idle.removeIf(batch -> {
+                    boolean stale = !batch.isAlive() || now - batch.getLastUsed() > IDLE_TIMEOUT_MS;
+                    if (stale) {
+                        expired.add(batch);
+                    }
+                    return stale;
+                });
+                if (idle.isEmpty()) {
+                    roots.remove();
+                }
+            }
+        }
+        expired.forEach(GitCatFileBatch::close);
+    }
+
+    @Override
+    public void dispose() {
+        idleReaper.cancel(false);
+        List<GitCatFileBatch> all = new ArrayList<>();
+        synchronized (this) {
+            disposed = true;
+            idleByRoot.values().forEach(all::addAll);
+            idleByRoot.clear();
+        }
+        all.forEach(GitCatFileBatch::close);
+    }
+}
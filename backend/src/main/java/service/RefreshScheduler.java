@@ -0,0 +1,164 @@
+package service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import git4idea.repo.GitRepository;
+import implementation.compare.ChangesService;
+import org.jetbrains.annotations.NotNull;
+import system.Defs;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single entry point for listener-driven refreshes. Events are classified by {@link EventKind} and coalesced
+ * within an adaptive window: the window widens while events keep arriving (rebase, checkout) and narrows again
+ * once things are quiet. At most one collection is in flight; events arriving meanwhile accumulate into one
+ * pending refresh that only invalidates what those events touched.
+ */
+public class RefreshScheduler implements Disposable {
+    private static final Logger LOG = Defs.getLogger(RefreshScheduler.class);
+
+    private static final long MIN_WINDOW_MS = ViewService.DEBOUNCE_MS;
+    private static final long MAX_WINDOW_MS = 1000;
+    // Collections always report back, also when superseded; this only guards against one that never finishes
+    private static final long MAX_IN_FLIGHT_MS = 60_000;
+
+    public enum EventKind {
+        /** HEAD, branches, tags or remotes of a repository moved. */
+        REF_CHANGE,
+        /** The git index of a repository changed (staging, reset). */
+        INDEX_CHANGE,
+        /** Files in the working tree or the local change lists changed. */
+        WORKING_TREE_CHANGE,
+        /** An editor was opened and needs its scope markers; nothing needs to be invalidated. */
+        EDITOR_OPENED
+    }
+
+    private final Project project;
+    private final ScheduledExecutorService executor =
+            AppExecutorUtil.createBoundedScheduledExecutorService("GitScopeRefreshScheduler", 1);
+
+    // All fields below are guarded by this
+    private final EnumSet<EventKind> pendingKinds = EnumSet.noneOf(EventKind.class);
+    private final Set<GitRepository> pendingRefRepositories = new HashSet<>();
+    private final Set<GitRepository> pendingRepositories = new HashSet<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean inFlight;
+    private long windowMs = MIN_WINDOW_MS;
+    private boolean disposed;
+
+    public RefreshScheduler(Project project) {
+        this.project = project;
+    }
+
+    public static RefreshScheduler getInstance(@NotNull Project project) {
+        return project.getService(RefreshScheduler.class);
+    }
+
+    /**
+     * Requests a refresh of the current tab caused by an event of the given kind affecting {@code repositories}.
+     */
+    public synchronized void request(@NotNull EventKind kind, @NotNull Collection<GitRepository> repositories) {
+        if (disposed) return;
+
+        pendingKinds.add(kind);
+        pendingRepositories.addAll(repositories);
+        if (kind == EventKind.REF_CHANGE) {
+            pendingRefRepositories.addAll(repositories);
+        }
+
+        if (scheduledFlush != null || inFlight) {
+            // Part of a burst: it joins the pending refresh and the next window gets wider
+            windowMs = Math.min(MAX_WINDOW_MS, windowMs * 2);
+            return;
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        scheduledFlush = executor.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        EnumSet<EventKind> kinds;
+        Set<GitRepository> refRepositories;
+        Set<GitRepository> repositories;
+        synchronized (this) {
+            scheduledFlush = null;
+            if (disposed || pendingKinds.isEmpty()) return;
+
+            kinds = EnumSet.copyOf(pendingKinds);
+            refRepositories = Set.copyOf(pendingRefRepositories);
+            repositories = Set.copyOf(pendingRepositories);
+            pendingKinds.clear();
+            pendingRefRepositories.clear();
+            pendingRepositories.clear();
+            inFlight = true;
+        }
+
+        CompletableFuture<Void> done;
+        try {
+            done = refresh(kinds, refRepositories, repositories);
+        } catch (RuntimeException e) {
+            LOG.warn("Refresh for " + kinds + " failed", e);
+            done = CompletableFuture.completedFuture(null);
+        }
+        done.completeOnTimeout(null, MAX_IN_FLIGHT_MS, TimeUnit.MILLISECONDS)
+                .whenComplete((result, error) -> onRefreshDone());
+    }
+
+    private CompletableFuture<Void> refresh(EnumSet<EventKind> kinds,
+                                            Set<GitRepository> refRepositories,
+                                            Set<GitRepository> repositories) {
+        ViewService viewService = project.isDisposed() ? null : project.getService(ViewService.class);
+        ChangesService changesService = project.isDisposed() ? null : project.getService(ChangesService.class);
+        if (viewService == null || viewService.isDisposed() || changesService == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        LOG.debug("RefreshScheduler - refreshing for " + kinds + ", repositories: " + repositories.size());
+
+        // Only the touched repositories are invalidated; for a plain editor open nothing is, and the
+        // collection is served from cache
+        refRepositories.forEach(changesService::invalidateRefs);
+        changesService.invalidate(repositories);
+
+        viewService.incrementUpdate();
+        return viewService.collectChanges(viewService.getCurrent(), false);
+    }
+
+    private synchronized void onRefreshDone() {
+        inFlight = false;
+        if (disposed) return;
+
+        if (!pendingKinds.isEmpty()) {
+            scheduleFlush();
+        } else {
+            // Quiet again: narrow the window back towards the minimum
+            windowMs = Math.max(MIN_WINDOW_MS, windowMs / 2);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (this) {
+            disposed = true;
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            pendingKinds.clear();
+            pendingRefRepositories.clear();
+            pendingRepositories.clear();
+        }
+        executor.shutdownNow();
+    }
+}
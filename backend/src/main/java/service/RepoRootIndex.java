@@ -0,0 +1,95 @@
+package service;
+
+import com.intellij.dvcs.repo.VcsRepositoryManager;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import git4idea.repo.GitRepository;
+import git4idea.repo.GitRepositoryManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import utils.PathPrefixIndex;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Path to repository lookup for a project. Git roots and the project base path are kept in a
+ * {@link PathPrefixIndex}, so mapping a file to its innermost repository costs O(path length) instead of a scan
+ * over all roots. The index is rebuilt lazily after {@code GitRepositoryManager} reports changed roots.
+ */
+public class RepoRootIndex implements Disposable {
+
+    private record Roots(PathPrefixIndex<GitRepository> repositories, @Nullable String basePath) {}
+
+    private final Project project;
+    private final AtomicInteger mappingVersion = new AtomicInteger();
+    private volatile Roots roots;
+
+    public RepoRootIndex(Project project) {
+        this.project = project;
+        project.getMessageBus().connect(this)
+                .subscribe(VcsRepositoryManager.VCS_REPOSITORY_MAPPING_UPDATED, this::invalidate);
+    }
+
+    public static RepoRootIndex getInstance(@NotNull Project project) {
+        return project.getService(RepoRootIndex.class);
+    }
+
+    /**
+     * The innermost git repository containing {@code path} (or whose root it is), or null.
+     */
+    @Nullable
+    public GitRepository getRepository(@NotNull String path) {
+        return getRoots().repositories().findLongestPrefix(FileUtil.toSystemIndependentName(path));
+    }
+
+    /**
+     * Whether {@code path} lies under one of the project's git roots or under its base path.
+     */
+    public boolean contains(@NotNull String path) {
+        String normalized = FileUtil.toSystemIndependentName(path);
+        Roots current = getRoots();
+        if (current.repositories().findLongestPrefix(normalized) != null) {
+            return true;
+        }
+        String basePath = current.basePath();
+        return basePath != null && FileUtil.isAncestor(basePath, normalized, false);
+    }
+
+    private void invalidate() {
+        mappingVersion.incrementAndGet();
+        roots = null;
+    }
+
+    private Roots getRoots() {
+        Roots current = roots;
+        if (current == null) {
+            int version = mappingVersion.get();
+            current = build();
+            // Don't publish an index built from roots that changed meanwhile
+            if (mappingVersion.get() == version) {
+                roots = current;
+            }
+        }
+        return current;
+    }
+
+    private Roots build() {
+        List<GitRepository> repositories = GitRepositoryManager.getInstance(project).getRepositories();
+        Map<String, GitRepository> repositoriesByRoot = new HashMap<>();
+        for (GitRepository repo : repositories) {
+            repositoriesByRoot.put(repo.getRoot().getPath(), repo);
+        }
+        String basePath = project.getBasePath();
+        return new Roots(PathPrefixIndex.of(repositoriesByRoot),
+                basePath == null ? null : FileUtil.toSystemIndependentName(basePath));
+    }
+
+    @Override
+    public void dispose() {
+        roots = null;
+    }
+}
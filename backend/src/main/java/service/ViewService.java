@@ -18,11 +18,14 @@ import com.intellij.ui.content.ContentManager;
 import com.intellij.util.concurrency.SequentialTaskExecutor;
 import implementation.compare.ChangesService;
 import implementation.lineStatusTracker.MyLineStatusTrackerImpl;
+import model.ChangeIndex;
 import model.Debounce;
 import model.MyModel;
 import model.MyModelBase;
+import model.ScopeSnapshot;
 import model.TargetBranchMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import state.State;
 import implementation.scope.MyScope;
 import system.Defs;
@@ -30,18 +33,21 @@ import toolwindow.elements.VcsTree;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
-import java.util.function.Function;
 
 public class ViewService implements Disposable {
     private static final com.intellij.openapi.diagnostic.Logger LOG = Defs.getLogger(ViewService.class);
@@ -75,9 +81,19 @@ public class ViewService implements Disposable {
     private MyModel myHeadModel;
     // Cached current model for safe access from background threads (avoids calling getContentManager() off-EDT)
     private volatile MyModel cachedCurrentModel;
+    // What the selected tab shows, republished on EDT whenever the selection or its changes change
+    private volatile ScopeSnapshot snapshot = ScopeSnapshot.EMPTY;
+    private final AtomicLong snapshotVersion = new AtomicLong(0);
     private boolean isInit;
     private int lastTabIndex;
     private Integer savedTabIndex;
+    // Tabs in order of last activation (EDT only); used to decide which inactive tabs to keep warm
+    private static final int MAX_PREFETCH_TABS = 4;
+    private final Deque<MyModel> recentlyActiveModels = new ArrayDeque<>();
+    // Model whose result was last fanned out to tree, scope, gutters and file colors, and its fingerprint. Written
+    // on the EDT and read by refreshes on other threads, so both are published together.
+    private record ShownState(MyModel model, @Nullable String fingerprint) {}
+    private volatile ShownState shownState;
     private final AtomicBoolean tabInitializationInProgress = new AtomicBoolean(false);
     private final AtomicBoolean initialFileColorsRefreshed = new AtomicBoolean(false);
     private final Map<MyModel, Consumer<MyModel.field>> modelListeners = new HashMap<>();
@@ -112,6 +128,8 @@ public class ViewService implements Disposable {
             entry.getKey().removeListener(entry.getValue());
         }
         modelListeners.clear();
+        recentlyActiveModels.clear();
+        snapshot = ScopeSnapshot.EMPTY;
 
         // Shutdown the debouncer scheduler FIRST to cancel pending tasks
         if (debouncer != null) {
@@ -543,6 +561,7 @@ public class ViewService implements Disposable {
                 }
                 case changes -> {
                     if (model.isActive()) {
+                        publishSnapshot(model);
                         Collection<Change> changes = model.getChanges();
                         doUpdateDebounced(changes);
 
@@ -558,11 +577,18 @@ public class ViewService implements Disposable {
                 // TODO: collectChanges: tab switched
                 case active -> {
                     incrementUpdate(); // Increment generation to cancel any stale updates for previous tab
-                    // Refresh file colors AFTER scopeChangesMap is updated
+                    recentlyActiveModels.remove(model);
+                    recentlyActiveModels.addFirst(model);
+                    publishSnapshot(model);
+                    // No forced refresh: a warm tab is served from cache without git (listeners invalidate
+                    // whatever became stale). Refresh file colors AFTER scopeChangesMap is updated
                     // This ensures GitScopeFileStatusProvider sees the correct scope
-                    collectChanges(model, true).thenRun(this::refreshFileColors);
+                    collectChanges(model, false).thenRun(this::refreshFileColors);
                 }
                 case tabName -> {
+                    if (model.isActive()) {
+                        publishSnapshot(model);
+                    }
                     if (!isProcessingTabRename) {
                         String customName = model.getCustomTabName();
                         if (customName != null && !customName.isEmpty()) {
@@ -683,21 +709,45 @@ public class ViewService implements Disposable {
 
         // serialize collection behind a single-threaded executor
         final DisposalToken token = this.disposalToken;
+        // Only what the UI shows right now may be kept as-is when nothing changed
+        final ShownState shown = shownState;
+        final String appliedFingerprint = shown != null && shown.model() == model ? shown.fingerprint() : null;
         changesExecutor.execute(() -> {
+            boolean firstCollection = model.getChangeIndex() == null;
+            if (firstCollection) {
+                showRestoredChanges(model, finalTargetBranchMap, gen, token);
+            }
+            // Partial results hold only the repositories being diffed right now, without local changes or
+            // cached repositories; they may fill an empty tab but never replace a result it already shows
+            Consumer<Collection<Change>> partialCallBack = firstCollection
+                    ? partial -> showPartialChanges(model, partial, gen, token) : null;
             changesService.collectChangesWithCallback(finalTargetBranchMap, result -> {
-                // Build maps on background thread to avoid slow file system operations on EDT
-                Map<String, Change> mergedChangesMap = MyModel.buildChangesByPathMap(result.mergedChanges());
-                Map<String, Change> scopeChangesMap = MyModel.buildChangesByPathMap(result.scopeChanges());
-                Map<String, Change> localChangesMap = MyModel.buildChangesByPathMap(result.localChanges());
-
                 ApplicationManager.getApplication().invokeLater(() -> {
                     try {
                         long currentGen = applyGeneration.get();
-                        if (!project.isDisposed() && !token.disposed && currentGen == gen) {
+                        if (result.superseded()) {
+                            // A newer collection brings the changes
+                            LOG.debug("Collection for generation " + gen + " was superseded");
+                        } else if (result.unchanged()) {
+                            // Same fingerprint as the shown result: skip tree, scope, gutters and file colors,
+                            // except gutters of editors opened since, which were never computed
+                            LOG.debug("Changes unchanged for generation " + gen);
+                            if (!project.isDisposed() && !token.disposed && model == getCurrent()) {
+                                ScopeSnapshot current = snapshot;
+                                myLineStatusTrackerImpl.updateUnpublished(getGutterChangesMap(current),
+                                        current.index().localMap());
+                            }
+                        } else if (!project.isDisposed() && !token.disposed && currentGen == gen) {
                             LOG.debug("Applying changes for generation " + gen);
-                            model.setChangesWithMap(result.mergedChanges(), mergedChangesMap);
-                            model.setScopeChangesWithMap(result.scopeChanges(), scopeChangesMap);
-                            model.setLocalChangesWithMap(result.localChanges(), localChangesMap);
+                            // The change index is built by ChangesService while merging, off the EDT
+                            model.setChangeIndex(result.index(), result.fingerprint());
+                            // The changes listener only fans out for the active model
+                            if (model.isActive()) {
+                                shownState = new ShownState(model, result.fingerprint());
+                            }
+                            if (model == getCurrent()) {
+                                prefetchInactiveTabs();
+                            }
                         } else {
                             LOG.debug("Discarding changes for generation " + gen + " (current generation is " + currentGen + ")");
                         }
@@ -705,10 +755,72 @@ public class ViewService implements Disposable {
                         done.complete(null);
                     }
                 }, ModalityState.any(), __ -> token.disposed);
-            }, checkFs);
+            }, partialCallBack, checkFs, appliedFingerprint);
         });
     }
 
+    /**
+     * Keeps the results of the most recently used inactive tabs warm in the background, so switching to them
+     * shows their data right away. Runs after the active tab has been applied; the active tab preempts it.
+     */
+    private void prefetchInactiveTabs() {
+        MyModel current = getCurrent();
+        List<TargetBranchMap> targets = new ArrayList<>();
+        Set<MyModel> candidates = new LinkedHashSet<>(recentlyActiveModels);
+        candidates.addAll(collection);
+        for (MyModel candidate : candidates) {
+            if (targets.size() >= MAX_PREFETCH_TABS) break;
+            if (candidate == current || (candidate != myHeadModel && !collection.contains(candidate))) {
+                continue; // Active or closed tab
+            }
+            TargetBranchMap targetBranchMap = candidate.getTargetBranchMap();
+            if (targetBranchMap != null) {
+                targets.add(targetBranchMap);
+            }
+        }
+        changesService.prefetch(targets);
+    }
+
+    /**
+     * Applies the scope a tab showed in the previous session before its first collection has resolved any
+     * refs, so tree, file colors and gutters are filled right after startup. The collection that follows
+     * verifies it and replaces it.
+     */
+    private void showRestoredChanges(MyModel model, TargetBranchMap targetBranchMap, long gen, DisposalToken token) {
+        ChangesService.ChangesResult restored = changesService.restoredResult(targetBranchMap);
+        if (restored == null) {
+            return;
+        }
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (project.isDisposed() || token.disposed || applyGeneration.get() != gen
+                    || model.getChangeIndex() != null) {
+                return;
+            }
+            LOG.debug("Showing restored changes for generation " + gen);
+            model.setChangeIndex(restored.index(), restored.fingerprint());
+        }, ModalityState.any(), __ -> token.disposed);
+    }
+
+    /**
+     * Shows scope changes of a still running collection in the tree of the current tab while the tab has no
+     * applied result yet, so the tree only ever grows. Gutters, file colors and the scope are only updated once
+     * the complete result has been applied.
+     */
+    private void showPartialChanges(MyModel model, Collection<Change> partial, long gen, DisposalToken token) {
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (project.isDisposed() || token.disposed || applyGeneration.get() != gen || model != getCurrent()
+                    || model.getChangeIndex() != null) {
+                return;
+            }
+            VcsTree vcsTree = toolWindowService.getVcsTree();
+            if (vcsTree != null) {
+                // The tree no longer matches the shown result, so the next refresh must not be skipped
+                shownState = null;
+                vcsTree.update(partial);
+            }
+        }, ModalityState.any(), __ -> token.disposed);
+    }
+
     // helper to enqueue UI work strictly after the currently queued collections
     public void runAfterCurrentChangeCollection(Runnable uiTask) {
         if (isDisposed) return;
@@ -774,61 +886,68 @@ public class ViewService implements Disposable {
     }
 
     /**
-     * Core private method to retrieve a cached HashMap from the current MyModel.
-     * Handles initialization checks and returns the pre-built map.
-     *
-     * @param mapGetter Function to retrieve the cached map from MyModel
-     * @return Map of file path to Change, or null if not initialized
+     * Publishes what {@code model} currently shows as the new {@link ScopeSnapshot}. EDT only.
      */
-    private Map<String, Change> getChangesMapInternal(Function<MyModel, Map<String, Change>> mapGetter) {
-        // Early return if ViewService is not fully initialized yet
-        if (toolWindowService == null) {
-            return null;
-        }
-
-        MyModel current = getCurrent();
-        if (current == null) {
-            return null;
+    private void publishSnapshot(MyModel model) {
+        Map<String, String> targetRefs = new HashMap<>();
+        TargetBranchMap targetBranchMap = model.getTargetBranchMap();
+        if (targetBranchMap != null) {
+            targetBranchMap.value().forEach((root, ref) -> {
+                if (ref != null) {
+                    targetRefs.put(root, ref);
+                }
+            });
         }
+        ChangeIndex index = model.getChangeIndex();
+        snapshot = new ScopeSnapshot(snapshotVersion.incrementAndGet(), model.getDisplayName(), targetRefs,
+                model.getChangesFingerprint(), index != null ? index : ChangeIndex.EMPTY);
+    }
 
-        return mapGetter.apply(current);
+    /**
+     * The state of the selected tab as last published. Safe to call from any thread; never blocks and never
+     * touches the tool window.
+     */
+    @NotNull
+    public ScopeSnapshot getSnapshot() {
+        return snapshot;
     }
 
     /**
-     * Gets a HashMap of scope changes indexed by file path for O(1) lookup.
-     * Returns the cached map that was built when changes were set.
+     * Gets a read-only map of scope changes indexed by file path for O(log n) lookup.
+     * Returns a view of the current {@link ScopeSnapshot}.
      *
-     * @return Map of file path to Change, or null if not initialized
+     * @return Map of file path to Change
      */
     public Map<String, Change> getScopeChangesMap() {
-        return getChangesMapInternal(MyModel::getScopeChangesMap);
+        return snapshot.index().scopeMap();
     }
 
     /**
-     * Gets a HashMap of local changes indexed by file path for O(1) lookup.
-     * Returns the cached map that was built when changes were set.
+     * Gets a read-only map of local changes indexed by file path for O(log n) lookup.
+     * Returns a view of the current {@link ScopeSnapshot}.
      *
-     * @return Map of file path to Change, or null if not initialized
+     * @return Map of file path to Change
      */
     public Map<String, Change> getLocalChangesTowardsHeadMap() {
-        return getChangesMapInternal(MyModel::getLocalChangesMap);
+        return snapshot.index().localMap();
     }
 
     /**
-     * Gets a HashMap of merged changes (scope + local) indexed by file path for O(1) lookup.
-     * Returns the cached map that was built when changes were set.
+     * Gets a read-only map of merged changes (scope + local) indexed by file path for O(log n) lookup.
+     * Returns a view of the current {@link ScopeSnapshot}.
      *
-     * @return Map of file path to Change, or null if not initialized
+     * @return Map of file path to Change
      */
     public Map<String, Change> getCurrentScopeChangesMap() {
-        return getChangesMapInternal(MyModel::getChangesMap);
+        return snapshot.index().mergedMap();
     }
 
     public void removeTab(int tabIndex) {
         int modelIndex = getModelIndex(tabIndex);
         // Check if the index is valid before removing
         if (modelIndex >= 0 && modelIndex < collection.size()) {
-            this.collection.remove(modelIndex);
+            MyModel removed = this.collection.remove(modelIndex);
+            recentlyActiveModels.remove(removed);
             save();
         }
     }
@@ -994,8 +1113,9 @@ public class ViewService implements Disposable {
             updateScopeDisplayName();
 
             // Determine which changes to show in gutter based on IDE's VCS gutter setting
-            Map<String, Change> gutterChangesMap = getGutterChangesMap();
-            Map<String, Change> localChangesMap = getLocalChangesTowardsHeadMap();
+            ScopeSnapshot current = snapshot;
+            Map<String, Change> gutterChangesMap = getGutterChangesMap(current);
+            Map<String, Change> localChangesMap = current.index().localMap();
             myLineStatusTrackerImpl.update(gutterChangesMap, localChangesMap);
             myScope.update(changes);
 
@@ -1023,15 +1143,16 @@ public class ViewService implements Disposable {
      * If IDE's gutter markers are enabled, only show scope changes (IDE will show local changes).
      * If IDE's gutter markers are disabled, show both scope and local changes.
      *
+     * @param current snapshot the gutters are rendered from
      * @return Map of file path to Change for gutter rendering
      */
-    private Map<String, Change> getGutterChangesMap() {
+    private Map<String, Change> getGutterChangesMap(ScopeSnapshot current) {
         VcsApplicationSettings vcsSettings = VcsApplicationSettings.getInstance();
         boolean ideGutterEnabled = vcsSettings.SHOW_LST_GUTTER_MARKERS;
 
         if (ideGutterEnabled) {
             // IDE gutter is enabled, we paint scope changes (IDE paints local changes)
-            return getScopeChangesMap();
+            return current.index().scopeMap();
         } else {
             // IDE gutter is disabled, turn off our plugin gutter rendering completely
             return new java.util.HashMap<>();  // Empty map = no gutter rendering
@@ -1047,8 +1168,7 @@ public class ViewService implements Disposable {
     private void updateScopeDisplayName() {
         GutterDataService gds = project.getService(GutterDataService.class);
         if (gds != null) {
-            MyModel current = getCurrent();
-            gds.setScopeDisplayName(current != null ? current.getDisplayName() : "");
+            gds.setScopeDisplayName(snapshot.displayName());
         }
     }
 }
\ No newline at end of file
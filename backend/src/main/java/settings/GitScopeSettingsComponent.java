@@ -1,5 +1,6 @@
 package settings;
 
+import com.intellij.ui.JBIntSpinner;
 import com.intellij.ui.TitledSeparator;
 import com.intellij.ui.components.JBCheckBox;
 import com.intellij.util.ui.FormBuilder;
@@ -17,6 +18,7 @@ public class GitScopeSettingsComponent {
     private final JBCheckBox scopeFileColorsCheckBox;
     private final JBCheckBox showUntrackedFilesCheckBox;
     private final JBCheckBox showDeletedFilesCheckBox;
+    private final JBIntSpinner baseContentCacheMbSpinner;
 
     public GitScopeSettingsComponent() {
         separateGutterRenderingCheckBox = new JBCheckBox(
@@ -35,6 +37,8 @@ public class GitScopeSettingsComponent {
             "Display deleted files"
         );
 
+        baseContentCacheMbSpinner = new JBIntSpinner(64, 0, 4096, 16);
+
         mainPanel = FormBuilder.createFormBuilder()
             .addComponent(new TitledSeparator("Gutter Rendering"))
             .addComponent(separateGutterRenderingCheckBox, 1)
@@ -49,6 +53,10 @@ public class GitScopeSettingsComponent {
             .addTooltip("When enabled, untracked (unversioned) files appear in the Git Scope view")
             .addComponent(showDeletedFilesCheckBox, 1)
             .addTooltip("When enabled, locally deleted files appear in the Git Scope view")
+            .addVerticalGap(10)
+            .addComponent(new TitledSeparator("Memory"))
+            .addLabeledComponent("Base content cache (MB):", baseContentCacheMbSpinner, 1)
+            .addTooltip("Memory used to keep file contents of scope revisions, shared by all projects")
             .addComponentFillVertically(new JPanel(), 0)
             .getPanel();
 
@@ -94,4 +102,12 @@ public class GitScopeSettingsComponent {
     public void setShowDeletedFiles(boolean value) {
         showDeletedFilesCheckBox.setSelected(value);
     }
+
+    public int getBaseContentCacheMb() {
+        return baseContentCacheMbSpinner.getNumber();
+    }
+
+    public void setBaseContentCacheMb(int value) {
+        baseContentCacheMbSpinner.setNumber(value);
+    }
 }
@@ -5,6 +5,7 @@ import com.intellij.openapi.options.ConfigurationException;
 import com.intellij.openapi.project.ProjectManager;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.Nullable;
+import service.BlobContentCache;
 import service.ViewService;
 
 import javax.swing.*;
@@ -40,7 +41,8 @@ public class GitScopeSettingsConfigurable implements Configurable {
         return settingsComponent.isSeparateGutterRendering() != settings.isSeparateGutterRendering()
             || settingsComponent.isScopeFileColors() != settings.isScopeFileColors()
             || settingsComponent.isShowUntrackedFiles() != settings.isShowUntrackedFiles()
-            || settingsComponent.isShowDeletedFiles() != settings.isShowDeletedFiles();
+            || settingsComponent.isShowDeletedFiles() != settings.isShowDeletedFiles()
+            || settingsComponent.getBaseContentCacheMb() != settings.getBaseContentCacheMb();
     }
 
     @Override
@@ -54,6 +56,10 @@ public class GitScopeSettingsConfigurable implements Configurable {
         settings.setScopeFileColors(settingsComponent.isScopeFileColors());
         settings.setShowUntrackedFiles(settingsComponent.isShowUntrackedFiles());
         settings.setShowDeletedFiles(settingsComponent.isShowDeletedFiles());
+        if (settingsComponent.getBaseContentCacheMb() != settings.getBaseContentCacheMb()) {
+            settings.setBaseContentCacheMb(settingsComponent.getBaseContentCacheMb());
+            BlobContentCache.getInstance().setMaxBytes(settings.getBaseContentCacheMb() * 1024L * 1024L);
+        }
 
         for (var project : ProjectManager.getInstance().getOpenProjects()) {
             if (!project.isDisposed()) {
@@ -86,6 +92,7 @@ public class GitScopeSettingsConfigurable implements Configurable {
         settingsComponent.setScopeFileColors(settings.isScopeFileColors());
         settingsComponent.setShowUntrackedFiles(settings.isShowUntrackedFiles());
         settingsComponent.setShowDeletedFiles(settings.isShowDeletedFiles());
+        settingsComponent.setBaseContentCacheMb(settings.getBaseContentCacheMb());
     }
 
     @Override
@@ -200,10 +200,12 @@ public class VcsTree extends JPanel {
         }
 
         final String tabId = getCurrentTabId();
-        lastChangesPerTab.put(tabId, changes != null ? new ArrayList<>(changes) : null);
-        lastChangesHashCodePerTab.put(tabId, calculateChangesHashCode(changes));
+        // Model changes are immutable views of the tab's change index, so they are kept without copying
+        int changesHashCode = calculateChangesHashCode(changes);
+        lastChangesPerTab.put(tabId, changes);
+        lastChangesHashCodePerTab.put(tabId, changesHashCode);
         lastChanges = changes;
-        lastChangesHashCode = calculateChangesHashCode(changes);
+        lastChangesHashCode = changesHashCode;
 
         final long sequenceNumber = updateSequence.incrementAndGet();
 
@@ -25,6 +25,7 @@ import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import org.jetbrains.annotations.NotNull;
+import service.RepoRootIndex;
 import com.intellij.history.LocalHistory;
 import com.intellij.openapi.util.io.FileUtil;
 import system.Defs;
@@ -191,7 +192,7 @@ public class CustomRollback {
         List<String> failedFiles = new ArrayList<>();
 
         Map<VirtualFile, List<Change>> rootToChanges = new LinkedHashMap<>();
-        List<GitRepository> allRepos = git4idea.GitUtil.getRepositoryManager(project).getRepositories();
+        RepoRootIndex rootIndex = RepoRootIndex.getInstance(project);
 
         for (Change change : changes) {
             ProgressManager.checkCanceled();
@@ -206,14 +207,7 @@ public class CustomRollback {
             }
 
             String absPathNorm = FileUtil.toSystemIndependentName(repoLookup.getPath());
-            GitRepository repoForChange = null;
-            for (GitRepository repo : allRepos) {
-                String rootPathNorm = FileUtil.toSystemIndependentName(repo.getRoot().getPath());
-                if (FileUtil.pathsEqual(absPathNorm, rootPathNorm) || FileUtil.isAncestor(rootPathNorm, absPathNorm, false)) {
-                    repoForChange = repo;
-                    break;
-                }
-            }
+            GitRepository repoForChange = rootIndex.getRepository(absPathNorm);
             if (repoForChange == null) {
                 failedFiles.add(absPathNorm);
                 continue;
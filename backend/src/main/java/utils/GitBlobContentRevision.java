@@ -0,0 +1,100 @@
+package utils;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vcs.changes.ByteBackedContentRevision;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.vcsUtil.VcsImplUtil;
+import git4idea.GitRevisionNumber;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import service.GitContentService;
+
+/**
+ * Committed file content loaded through {@link GitContentService} (a pooled {@code git cat-file --batch})
+ * instead of a {@code git show} process per call. The object is addressed by its blob SHA when the
+ * {@code git diff --raw} output provided one, and by {@code <revision>:<path>} otherwise.
+ */
+public final class GitBlobContentRevision implements ByteBackedContentRevision {
+
+    private final Project project;
+    private final VirtualFile root;
+    private final FilePath file;
+    private final GitRevisionNumber revision;
+    private final String object;
+
+    /**
+     * @param blobSha blob SHA of the file in {@code revision}, or null if unknown
+     */
+    public GitBlobContentRevision(@NotNull Project project, @NotNull VirtualFile root, @NotNull FilePath file,
+                                  @NotNull GitRevisionNumber revision, @Nullable String blobSha) {
+        this.project = project;
+        this.root = root;
+        this.file = file;
+        this.revision = revision;
+        this.object = blobSha != null ? blobSha : revision.asString() + ":" + relativePath(root, file);
+    }
+
+    /**
+     * The object name handed to {@code git cat-file}: a blob SHA or {@code <revision>:<path>}.
+     */
+    @NotNull
+    public String getObject() {
+        return object;
+    }
+
+    @NotNull
+    public VirtualFile getRoot() {
+        return root;
+    }
+
+    @Override
+    public byte @Nullable [] getContentAsBytes() throws VcsException {
+        return GitContentService.getInstance(project).load(root, object);
+    }
+
+    @Override
+    public @Nullable String getContent() throws VcsException {
+        byte[] bytes = getContentAsBytes();
+        return bytes == null ? null : VcsImplUtil.loadTextFromBytes(project, bytes, file);
+    }
+
+    @Override
+    public @NotNull FilePath getFile() {
+        return file;
+    }
+
+    @Override
+    public @NotNull GitRevisionNumber getRevisionNumber() {
+        return revision;
+    }
+
+    // Like GitContentRevision, equal for the same file and content, so changes built from them match by equality
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GitBlobContentRevision other)) {
+            return false;
+        }
+        return file.getPath().equals(other.file.getPath()) && object.equals(other.object);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * file.getPath().hashCode() + object.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return file.getPath() + ":" + revision.asString();
+    }
+
+    private static String relativePath(VirtualFile root, FilePath file) {
+        String rootPath = root.getPath();
+        String path = file.getPath();
+        return path.startsWith(rootPath + "/") ? path.substring(rootPath.length() + 1) : path;
+    }
+}
@@ -0,0 +1,202 @@
+package utils;
+
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import git4idea.config.GitExecutable;
+import git4idea.config.GitExecutableManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-lived {@code git cat-file --batch} process of one repository. Object names (blob SHAs or
+ * {@code <rev>:<path>}) are written to its stdin and their contents read back from stdout, so any number of
+ * files can be loaded without spawning a process per file. A batch of requests is pipelined: a writer thread
+ * feeds all names while the caller reads the answers, which keeps both pipes flowing.
+ * <p>
+ * Not thread-safe; callers borrow an instance exclusively. After a failure or a cancellation in the middle of
+ * a batch the protocol state is unknown, so the process is killed and {@link #isAlive()} turns false.
+ * <p>
+ * The process talks to git through raw pipes, which git4idea's handlers do not offer, so it is only used with
+ * a local git executable ({@link #isSupported}); WSL and other non-local executables need git4idea's path
+ * translation and environment, and callers load their contents through a handler instead.
+ */
+public final class GitCatFileBatch implements AutoCloseable {
+
+    // How often a blocking read checks the progress indicator for cancellation
+    private static final long CANCEL_CHECK_MS = 100;
+
+    private final Process process;
+    private final OutputStream stdin;
+    private final InputStream stdout;
+    private long lastUsed = System.currentTimeMillis();
+
+    private GitCatFileBatch(Process process) {
+        this.process = process;
+        this.stdin = new BufferedOutputStream(process.getOutputStream());
+        this.stdout = new BufferedInputStream(process.getInputStream(), 64 * 1024);
+    }
+
+    /**
+     * Whether the project's git executable can be run directly, i.e. is a local one.
+     */
+    public static boolean isSupported(@NotNull Project project) {
+        return GitExecutableManager.getInstance().getExecutable(project) instanceof GitExecutable.Local;
+    }
+
+    @NotNull
+    public static GitCatFileBatch start(@NotNull Project project, @NotNull VirtualFile root) throws VcsException {
+        GitExecutable executable = GitExecutableManager.getInstance().getExecutable(project);
+        if (!(executable instanceof GitExecutable.Local)) {
+            throw new VcsException("git cat-file --batch needs a local git executable, got " + executable);
+        }
+        GeneralCommandLine commandLine = new GeneralCommandLine(executable.getExePath(), "cat-file", "--batch")
+                .withWorkDirectory(root.getPath())
+                // Like git4idea's handlers: never wait for credentials on a terminal nobody sees
+                .withEnvironment("GIT_TERMINAL_PROMPT", "0");
+        try {
+            Process process = commandLine.toProcessBuilder()
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            return new GitCatFileBatch(process);
+        } catch (IOException e) {
+            throw new VcsException("Could not start git cat-file --batch in " + root.getPath(), e);
+        }
+    }
+
+    /**
+     * Reads the given objects in one pipelined round trip. The returned list is index-aligned with
+     * {@code objects}; an entry is null when git does not know the object. Honours the current progress
+     * indicator: on cancellation the process is killed, which also ends a read blocked on its output.
+     */
+    @NotNull
+    public List<byte @Nullable []> read(@NotNull List<String> objects) throws VcsException {
+        lastUsed = System.currentTimeMillis();
+        List<byte[]> contents = new ArrayList<>(objects.size());
+        Future<?> writer = null;
+        ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        ScheduledFuture<?> cancelWatcher = indicator == null ? null
+                : AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(() -> {
+                    if (indicator.isCanceled()) {
+                        process.destroy();
+                    }
+                }, CANCEL_CHECK_MS, CANCEL_CHECK_MS, TimeUnit.MILLISECONDS);
+        boolean completed = false;
+        try {
+            if (objects.size() == 1) {
+                writeRequests(objects);
+            } else {
+                // Answers may fill stdout before all requests are written; write from another thread
+                writer = AppExecutorUtil.getAppExecutorService().submit(() -> {
+                    writeRequests(objects);
+                    return null;
+                });
+            }
+            for (int i = 0; i < objects.size(); i++) {
+                ProgressManager.checkCanceled();
+                contents.add(readObject());
+            }
+            if (writer != null) {
+                writer.get();
+            }
+            completed = true;
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (Exception e) {
+            if (indicator != null && indicator.isCanceled()) {
+                // The watcher killed the process while a read was blocked on it
+                throw new ProcessCanceledException();
+            }
+            throw new VcsException("git cat-file --batch failed: " + e.getMessage(), e);
+        } finally {
+            if (cancelWatcher != null) {
+                cancelWatcher.cancel(false);
+            }
+            if (!completed) {
+                if (writer != null) {
+                    writer.cancel(true);
+                }
+                close();
+            }
+            lastUsed = System.currentTimeMillis();
+        }
+        return contents;
+    }
+
+    private void writeRequests(List<String> objects) throws IOException {
+        for (String object : objects) {
+            stdin.write(object.getBytes(StandardCharsets.UTF_8));
+            stdin.write('\n');
+        }
+        stdin.flush();
+    }
+
+    private byte @Nullable [] readObject() throws IOException {
+        // "<sha> <type> <size>" or "<object> missing" / "<object> ambiguous"
+        String header = readLine();
+        int lastSpace = header.lastIndexOf(' ');
+        String tail = header.substring(lastSpace + 1);
+        if (tail.equals("missing") || tail.equals("ambiguous")) {
+            return null;
+        }
+        int size;
+        try {
+            size = Integer.parseInt(tail);
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected git cat-file header: " + header);
+        }
+        byte[] content = stdout.readNBytes(size);
+        if (content.length != size || stdout.read() != '\n') {
+            throw new IOException("Truncated git cat-file output for " + header);
+        }
+        return content;
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = stdout.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("git cat-file --batch exited");
+            }
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    @Override
+    public void close() {
+        try {
+            stdin.close();
+        } catch (IOException ignored) {
+            // the process is going away anyway
+        }
+        process.destroy();
+    }
+}
@@ -0,0 +1,178 @@
+package utils;
+
+import com.intellij.execution.process.ProcessOutputTypes;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.vcsUtil.VcsUtil;
+import git4idea.GitRevisionNumber;
+import git4idea.commands.Git;
+import git4idea.commands.GitCommand;
+import git4idea.commands.GitCommandResult;
+import git4idea.commands.GitLineHandler;
+import git4idea.commands.GitLineHandlerListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * Streams {@code git diff --raw} output line by line instead of collecting the whole diff first.
+ * Each record is turned into an {@link Entry} as soon as its line arrives, so callers can build changes
+ * (and show partial results) while git is still writing.
+ */
+public final class GitRawDiff {
+
+    private static final String NULL_SHA = "0000000000000000000000000000000000000000";
+
+    /**
+     * One {@code --raw} record. Paths are relative to the repository root, blob SHAs are null for the
+     * missing side of additions and deletions.
+     *
+     * @param status     Status letter (M, A, D, R, C, T)
+     * @param beforePath Path in the source commit, null for additions
+     * @param afterPath  Path in the target commit, null for deletions
+     * @param beforeBlob Blob SHA in the source commit
+     * @param afterBlob  Blob SHA in the target commit
+     */
+    public record Entry(char status,
+                        @Nullable String beforePath, @Nullable String afterPath,
+                        @Nullable String beforeBlob, @Nullable String afterBlob) {
+    }
+
+    private GitRawDiff() {}
+
+    /**
+     * Runs {@code git diff --raw --no-abbrev -M <from> <to> -- <path>} and hands every record to
+     * {@code consumer} while the output is being read. Honours the current progress indicator.
+     *
+     * @param path limits the diff, usually the repository root
+     */
+    public static void stream(@NotNull Project project,
+                              @NotNull VirtualFile root,
+                              @NotNull String fromRevision,
+                              @NotNull String toRevision,
+                              @NotNull FilePath path,
+                              @NotNull Consumer<Entry> consumer) throws VcsException {
+        GitLineHandler handler = new GitLineHandler(project, root, GitCommand.DIFF);
+        handler.setSilent(true);
+        handler.addParameters("--raw", "--no-abbrev", "-M", "--no-color", "--no-ext-diff", fromRevision, toRevision);
+        handler.endOptions();
+        handler.addRelativePaths(path);
+
+        VcsException[] parseError = new VcsException[1];
+        handler.addLineListener(new GitLineHandlerListener() {
+            @Override
+            public void onLineAvailable(String line, Key outputType) {
+                if (outputType != ProcessOutputTypes.STDOUT || parseError[0] != null) {
+                    return;
+                }
+                try {
+                    Entry entry = parseLine(line);
+                    if (entry != null) {
+                        consumer.accept(entry);
+                    }
+                } catch (VcsException e) {
+                    parseError[0] = e;
+                }
+            }
+        });
+
+        GitCommandResult result = Git.getInstance().runCommandWithoutCollectingOutput(handler);
+        ProgressManager.checkCanceled();
+        if (parseError[0] != null) {
+            throw parseError[0];
+        }
+        result.throwOnError();
+    }
+
+    /**
+     * Parses one raw record, e.g. {@code :100644 100644 <sha> <sha> M\tpath} or
+     * {@code :100644 100644 <sha> <sha> R087\told\tnew}. Returns null for lines that are not records.
+     */
+    @Nullable
+    static Entry parseLine(@NotNull String line) throws VcsException {
+        if (line.isEmpty() || line.charAt(0) != ':') {
+            return null;
+        }
+        int tab = line.indexOf('\t');
+        if (tab < 0) {
+            throw new VcsException("Unexpected git diff --raw output: " + line);
+        }
+        String[] meta = line.substring(1, tab).split(" ");
+        if (meta.length < 5 || meta[4].isEmpty()) {
+            throw new VcsException("Unexpected git diff --raw output: " + line);
+        }
+        String beforeBlob = NULL_SHA.equals(meta[2]) ? null : meta[2];
+        String afterBlob = NULL_SHA.equals(meta[3]) ? null : meta[3];
+        char status = meta[4].charAt(0);
+
+        String paths = line.substring(tab + 1);
+        String firstPath;
+        String secondPath = null;
+        if (status == 'R' || status == 'C') {
+            int separator = findPathSeparator(paths);
+            if (separator < 0) {
+                throw new VcsException("Unexpected git diff --raw output: " + line);
+            }
+            firstPath = unquote(paths.substring(0, separator));
+            secondPath = unquote(paths.substring(separator + 1));
+        } else {
+            firstPath = unquote(paths);
+        }
+
+        return switch (status) {
+            case 'A' -> new Entry(status, null, firstPath, null, afterBlob);
+            case 'D' -> new Entry(status, firstPath, null, beforeBlob, null);
+            case 'R', 'C' -> new Entry(status, firstPath, secondPath, beforeBlob, afterBlob);
+            default -> new Entry(status, firstPath, firstPath, beforeBlob, afterBlob);
+        };
+    }
+
+    /**
+     * Creates the {@link Change} for a record between the two given revisions.
+     */
+    @NotNull
+    public static Change toChange(@NotNull Project project, @NotNull VirtualFile root, @NotNull Entry entry,
+                                  @NotNull GitRevisionNumber fromRevision, @NotNull GitRevisionNumber toRevision) {
+        // Contents are read by blob SHA through the pooled git cat-file --batch, not one git show per file
+        ContentRevision before = entry.beforePath() == null ? null
+                : new GitBlobContentRevision(project, root, filePath(root, entry.beforePath()), fromRevision, entry.beforeBlob());
+        ContentRevision after = entry.afterPath() == null ? null
+                : new GitBlobContentRevision(project, root, filePath(root, entry.afterPath()), toRevision, entry.afterBlob());
+        return new Change(before, after);
+    }
+
+    private static FilePath filePath(VirtualFile root, String relativePath) {
+        return VcsUtil.getFilePath(root.getPath() + "/" + relativePath, false);
+    }
+
+    // Rename records separate both paths with a tab; a quoted path never contains a raw tab
+    private static int findPathSeparator(String paths) {
+        if (!paths.startsWith("\"")) {
+            return paths.indexOf('\t');
+        }
+        for (int i = 1; i < paths.length(); i++) {
+            char c = paths.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return paths.indexOf('\t', i);
+            }
+        }
+        return -1;
+    }
+
+    // Paths with special characters are C-quoted unless core.quotePath is off
+    private static String unquote(String path) throws VcsException {
+        if (path.length() >= 2 && path.startsWith("\"") && path.endsWith("\"")) {
+            return git4idea.GitUtil.unescapePath(path.substring(1, path.length() - 1));
+        }
+        return path;
+    }
+}
@@ -1,6 +1,7 @@
 package utils;
 
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
@@ -8,9 +9,7 @@ import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.changes.ContentRevision;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.vcsUtil.VcsUtil;
-import git4idea.GitContentRevision;
 import git4idea.GitRevisionNumber;
-import git4idea.changes.GitChangeUtils;
 import git4idea.commands.Git;
 import git4idea.commands.GitCommand;
 import git4idea.commands.GitLineHandler;
@@ -20,8 +19,11 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import system.Defs;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
 
 import static com.intellij.openapi.vcs.history.VcsDiffUtil.createChangesWithCurrentContentForFile;
 
@@ -69,37 +71,47 @@ public class GitUtil {
         return null;
     }
 
+    /**
+     * Resolves the best common ancestor of two commit-ish refs with {@code git merge-base}.
+     * Returns null if either ref cannot be resolved or the histories are unrelated.
+     */
+    @Nullable
+    public static GitRevisionNumber resolveMergeBase(@NotNull GitRepository repository,
+                                                     @NotNull String first,
+                                                     @NotNull String second) {
+        GitLineHandler handler = new GitLineHandler(repository.getProject(), repository.getRoot(), GitCommand.MERGE_BASE);
+        handler.setSilent(true);
+        handler.addParameters(first, second);
+        try {
+            String hash = Git.getInstance().runCommand(handler)
+                    .getOutputOrThrow()
+                    .trim();
+            if (!hash.isEmpty()) {
+                return new GitRevisionNumber(hash);
+            }
+        } catch (VcsException e) {
+            LOG.debug("Failed to resolve merge base of '" + first + "' and '" + second + "': " + e.getMessage());
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.warn("Unexpected error resolving merge base in repository " + repository.getRoot().getPath(), e);
+        }
+        return null;
+    }
+
     public static @NotNull Collection<Change> getDiffChanges(@NotNull GitRepository repository,
                                                              @NotNull VirtualFile file,
                                                              @NotNull GitRevisionNumber revisionNumber) throws VcsException {
-        FilePath filePath = VcsUtil.getFilePath(file);
-
-        Project project = repository.getProject();
-
         try {
             // Get the current HEAD revision from the repository
             String headRevisionStr = repository.getCurrentRevision();
             if (headRevisionStr == null) {
                 throw new VcsException("Could not resolve HEAD reference");
             }
-            GitRevisionNumber headRevision = new GitRevisionNumber(headRevisionStr);
-
-            // Compare target revision to HEAD (not working directory) to get only scope changes
-            // This excludes uncommitted local changes which are handled separately
-            Collection<Change> changes =
-                    GitChangeUtils.getDiff(project, repository.getRoot(), revisionNumber.asString(), headRevision.asString(), Collections.singletonList(filePath));
-
-            if (changes.isEmpty() && GitHistoryUtils.getCurrentRevision(project, filePath, revisionNumber.toString()) == null) {
-                throw new VcsException("Could not get diff for base file:" + file + " and revision: " + revisionNumber);
-            }
-
-            ContentRevision contentRevision = GitContentRevision.createRevision(filePath, revisionNumber, project);
-            return changes.isEmpty() && !filePath.isDirectory() ? createChangesWithCurrentContentForFile(filePath, contentRevision) : changes;
+            return getDiffChanges(repository, file, revisionNumber, new GitRevisionNumber(headRevisionStr), null);
         } catch (VcsException e) {
-            // Check if this is a file locking or access issue (common on Windows)
-            String message = e.getMessage();
-            if (message.contains("lock") || message.contains("unable to open") || message.contains("permission denied") || message.contains("access is denied")) {
-                LOG.warn("File access error (possibly locked file) in repository " + repository.getRoot().getPath() + ": " + message);
+            if (isFileAccessError(e)) {
+                LOG.warn("File access error (possibly locked file) in repository " + repository.getRoot().getPath() + ": " + e.getMessage());
                 // Return empty collection to gracefully ignore this file
                 return Collections.emptyList();
             }
@@ -108,4 +120,51 @@ public class GitUtil {
         }
     }
 
+    /**
+     * Compares {@code revisionNumber} to the given HEAD revision. Unlike
+     * {@link #getDiffChanges(GitRepository, VirtualFile, GitRevisionNumber)} file access errors are not
+     * swallowed, so callers caching the result can tell a transient failure from an empty diff
+     * (see {@link #isFileAccessError}).
+     * <p>
+     * The diff is streamed (see {@link GitRawDiff}); {@code onChange}, when given, receives every change as
+     * soon as it has been parsed, before the complete collection is returned.
+     */
+    public static @NotNull Collection<Change> getDiffChanges(@NotNull GitRepository repository,
+                                                             @NotNull VirtualFile file,
+                                                             @NotNull GitRevisionNumber revisionNumber,
+                                                             @NotNull GitRevisionNumber headRevision,
+                                                             @Nullable Consumer<Change> onChange) throws VcsException {
+        FilePath filePath = VcsUtil.getFilePath(file);
+
+        Project project = repository.getProject();
+        VirtualFile root = repository.getRoot();
+
+        // Compare target revision to HEAD (not working directory) to get only scope changes
+        // This excludes uncommitted local changes which are handled separately
+        List<Change> changes = new ArrayList<>();
+        GitRawDiff.stream(project, root, revisionNumber.asString(), headRevision.asString(), filePath, entry -> {
+            Change change = GitRawDiff.toChange(project, root, entry, revisionNumber, headRevision);
+            changes.add(change);
+            if (onChange != null) {
+                onChange.accept(change);
+            }
+        });
+
+        if (changes.isEmpty() && GitHistoryUtils.getCurrentRevision(project, filePath, revisionNumber.toString()) == null) {
+            throw new VcsException("Could not get diff for base file:" + file + " and revision: " + revisionNumber);
+        }
+
+        ContentRevision contentRevision = new GitBlobContentRevision(project, root, filePath, revisionNumber, null);
+        return changes.isEmpty() && !filePath.isDirectory() ? createChangesWithCurrentContentForFile(filePath, contentRevision) : changes;
+    }
+
+    /**
+     * Whether a git failure is a file locking or access issue (common on Windows).
+     */
+    public static boolean isFileAccessError(@NotNull VcsException e) {
+        String message = e.getMessage();
+        return message != null && (message.contains("lock") || message.contains("unable to open")
+                || message.contains("permission denied") || message.contains("access is denied"));
+    }
+
 }
@@ -0,0 +1,96 @@
+package utils;
+
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable trie of '/'-separated paths (e.g. repository roots). {@link #findLongestPrefix} walks the query
+ * path segment by segment, so a lookup costs O(path length) regardless of how many paths are indexed, and
+ * nested entries resolve to the innermost one. Segments are compared ignoring case on case-insensitive file
+ * systems, like {@code FileUtil.PATH_HASHING_STRATEGY}.
+ *
+ * @param <T> value stored for each indexed path
+ */
+public final class PathPrefixIndex<T> {
+
+    private static final class Node<T> {
+        private final Map<String, Node<T>> children = new HashMap<>(4);
+        private T value;
+    }
+
+    private final Node<T> root = new Node<>();
+    private final int size;
+    private final boolean caseSensitive;
+
+    private PathPrefixIndex(@NotNull Map<String, T> valuesByPath, boolean caseSensitive) {
+        this.caseSensitive = caseSensitive;
+        for (Map.Entry<String, T> entry : valuesByPath.entrySet()) {
+            Node<T> node = root;
+            String path = entry.getKey();
+            int start = 0;
+            while (start < path.length()) {
+                int end = nextSeparator(path, start);
+                if (end > start) {
+                    node = node.children.computeIfAbsent(segment(path, start, end), __ -> new Node<>());
+                }
+                start = end + 1;
+            }
+            node.value = entry.getValue();
+        }
+        this.size = valuesByPath.size();
+    }
+
+    @NotNull
+    public static <T> PathPrefixIndex<T> of(@NotNull Map<String, T> valuesByPath) {
+        return of(valuesByPath, SystemInfo.isFileSystemCaseSensitive);
+    }
+
+    @NotNull
+    public static <T> PathPrefixIndex<T> of(@NotNull Map<String, T> valuesByPath, boolean caseSensitive) {
+        return new PathPrefixIndex<>(valuesByPath, caseSensitive);
+    }
+
+    /**
+     * Returns the value of the longest indexed path that equals {@code path} or is an ancestor of it,
+     * or null if there is none.
+     */
+    @Nullable
+    public T findLongestPrefix(@NotNull String path) {
+        Node<T> node = root;
+        T best = root.value;
+        int start = 0;
+        while (start < path.length()) {
+            int end = nextSeparator(path, start);
+            if (end > start) {
+                node = node.children.get(segment(path, start, end));
+                if (node == null) {
+                    break;
+                }
+                if (node.value != null) {
+                    best = node.value;
+                }
+            }
+            start = end + 1;
+        }
+        return best;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private String segment(String path, int start, int end) {
+        String segment = path.substring(start, end);
+        return caseSensitive ? segment : StringUtil.toLowerCase(segment);
+    }
+
+    private static int nextSeparator(String path, int from) {
+        int separator = path.indexOf('/', from);
+        return separator < 0 ? path.length() : separator;
+    }
+}
@@ -0,0 +1,127 @@
+package implementation.compare;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.openapi.vcs.changes.CurrentContentRevision;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.intellij.vcsUtil.VcsUtil;
+import implementation.compare.ChangesService.ScopeLayer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class ScopeSnapshotStoreTest extends BasePlatformTestCase {
+
+    private static final String TARGET_SHA = "1111111111111111111111111111111111111111";
+    private static final String HEAD_SHA = "2222222222222222222222222222222222222222";
+
+    private File rootDir;
+    private VirtualFile root;
+    private ScopeSnapshotStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        rootDir = FileUtil.createTempDirectory("gitscope", null);
+        root = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(rootDir);
+        store = new ScopeSnapshotStore(getProject());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            Files.deleteIfExists(snapshotFile());
+            FileUtil.delete(rootDir);
+        } catch (Throwable e) {
+            addSuppressedException(e);
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testRoundTripKeepsChangeTypesPathsAndScopes() {
+        ScopeLayerCache.Key key = new ScopeLayerCache.Key(root.getPath(), TARGET_SHA, HEAD_SHA);
+        List<Change> changes = List.of(
+                new Change(revision("src/Modified.java"), revision("src/Modified.java")),
+                new Change(null, revision("src/Added.java")),
+                new Change(revision("src/Deleted.java"), null),
+                new Change(revision("src/Old.java"), revision("src/New.java")),
+                new Change(revision("dir with space/ä.txt"), revision("dir with space/ä.txt")));
+        Map<String, ScopeLayerCache.Key> keysByScope = new LinkedHashMap<>();
+        keysByScope.put(root.getPath() + "|main", key);
+        keysByScope.put(root.getPath() + "|origin/main", key);
+
+        store.save(new ScopeSnapshotStore.Snapshot(Map.of(key, ScopeLayer.of(changes)), keysByScope));
+        ScopeSnapshotStore.Snapshot loaded = store.load();
+
+        assertEquals(Set.of(key), loaded.layers().keySet());
+        assertEquals(describe(changes), describe(loaded.layers().get(key).changes()));
+        assertEquals(keysByScope, loaded.keysByScope());
+    }
+
+    public void testChangesOutsideTheRootAreNotStored() {
+        ScopeLayerCache.Key key = new ScopeLayerCache.Key(root.getPath(), TARGET_SHA, HEAD_SHA);
+        Change inside = new Change(null, revision("inside.txt"));
+        Change outside = new Change(null, new CurrentContentRevision(VcsUtil.getFilePath(root.getParent().getPath() + "/outside.txt", false)));
+
+        store.save(new ScopeSnapshotStore.Snapshot(Map.of(key, ScopeLayer.of(List.of(inside, outside))), Map.of()));
+
+        assertEquals(describe(List.of(inside)), describe(store.load().layers().get(key).changes()));
+    }
+
+    public void testLayersOfMissingRootsAreDropped() {
+        ScopeLayerCache.Key key = new ScopeLayerCache.Key(root.getPath(), TARGET_SHA, HEAD_SHA);
+        String missingRoot = root.getPath() + "/missing";
+        ScopeLayerCache.Key missingKey = new ScopeLayerCache.Key(missingRoot, TARGET_SHA, HEAD_SHA);
+        Map<ScopeLayerCache.Key, ScopeLayer> layers = new LinkedHashMap<>();
+        layers.put(missingKey, ScopeLayer.of(List.of()));
+        layers.put(key, ScopeLayer.of(List.of(new Change(null, revision("a.txt")))));
+
+        store.save(new ScopeSnapshotStore.Snapshot(layers,
+                Map.of(missingRoot + "|main", missingKey, root.getPath() + "|main", key)));
+        ScopeSnapshotStore.Snapshot loaded = store.load();
+
+        assertEquals(Set.of(key), loaded.layers().keySet());
+        assertEquals(Map.of(root.getPath() + "|main", key), loaded.keysByScope());
+    }
+
+    public void testMissingOrCorruptSnapshotLoadsEmpty() throws Exception {
+        Files.deleteIfExists(snapshotFile());
+        assertSame(ScopeSnapshotStore.Snapshot.EMPTY, store.load());
+
+        Files.createDirectories(snapshotFile().getParent());
+        Files.write(snapshotFile(), new byte[]{1, 2, 3});
+        assertSame(ScopeSnapshotStore.Snapshot.EMPTY, store.load());
+    }
+
+    private ContentRevision revision(String relativePath) {
+        return new CurrentContentRevision(VcsUtil.getFilePath(root.getPath() + "/" + relativePath, false));
+    }
+
+    private Path snapshotFile() {
+        return Path.of(PathManager.getSystemPath(), "gitscope", getProject().getLocationHash() + ".bin");
+    }
+
+    private static Set<String> describe(Iterable<Change> changes) {
+        Set<String> result = new TreeSet<>();
+        for (Change change : changes) {
+            List<String> parts = new ArrayList<>();
+            parts.add(change.getType().name());
+            parts.add(change.getBeforeRevision() == null ? "-" : change.getBeforeRevision().getFile().getPath());
+            parts.add(change.getAfterRevision() == null ? "-" : change.getAfterRevision().getFile().getPath());
+            result.add(String.join(" ", parts));
+        }
+        return result;
+    }
+}
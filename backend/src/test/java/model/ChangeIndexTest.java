@@ -0,0 +1,77 @@
+package model;
+
+import com.intellij.openapi.vcs.LocalFilePath;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.CurrentContentRevision;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ChangeIndexTest {
+
+    private static final String A = "/repo/a.txt";
+    private static final String B = "/repo/b.txt";
+    private static final String C = "/repo/c.txt";
+
+    @Test
+    public void emptyMapsGiveEmptyIndex() {
+        assertSame(ChangeIndex.EMPTY, ChangeIndex.of(Map.of(), Map.of(), Map.of()));
+    }
+
+    @Test
+    public void changesAreOrderedByPath() {
+        Change a = change(A);
+        Change b = change(B);
+        Change c = change(C);
+        ChangeIndex index = ChangeIndex.of(Map.of(C, c, A, a, B, b), Map.of(), Map.of());
+        assertEquals(List.of(a, b, c), new ArrayList<>(index.mergedChanges()));
+    }
+
+    @Test
+    public void viewsKeepTheirOwnChangePerPath() {
+        Change merged = change(A);
+        Change scope = change(A);
+        Change local = change(A);
+        Change scopeOnly = change(B);
+        ChangeIndex index = ChangeIndex.of(Map.of(A, merged), Map.of(A, scope, B, scopeOnly), Map.of(A, local));
+
+        assertSame(merged, index.mergedMap().get(A));
+        assertSame(scope, index.scopeMap().get(A));
+        assertSame(local, index.localMap().get(A));
+        assertEquals(List.of(scope, scopeOnly), new ArrayList<>(index.scopeChanges()));
+        assertEquals(List.of(local), new ArrayList<>(index.localChanges()));
+    }
+
+    @Test
+    public void mapsOnlyContainPathsOfTheirView() {
+        Change scopeOnly = change(B);
+        ChangeIndex index = ChangeIndex.of(Map.of(), Map.of(B, scopeOnly), Map.of());
+
+        assertTrue(index.scopeMap().containsKey(B));
+        assertFalse(index.mergedMap().containsKey(B));
+        assertNull(index.localMap().get(B));
+        assertNull(index.scopeMap().get(C));
+        assertEquals(1, index.scopeMap().size());
+        assertTrue(index.mergedChanges().isEmpty());
+    }
+
+    @Test
+    public void markerReplacesMergedChanges() {
+        List<Change> marker = new ArrayList<>();
+        ChangeIndex index = ChangeIndex.ofMarker(marker);
+        assertSame(marker, index.mergedChanges());
+        assertTrue(index.scopeMap().isEmpty());
+    }
+
+    private static Change change(String path) {
+        return new Change(null, new CurrentContentRevision(new LocalFilePath(path, false)));
+    }
+}
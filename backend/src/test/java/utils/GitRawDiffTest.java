@@ -0,0 +1,79 @@
+package utils;
+
+import com.intellij.openapi.vcs.VcsException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class GitRawDiffTest {
+
+    private static final String SHA_1 = "1111111111111111111111111111111111111111";
+    private static final String SHA_2 = "2222222222222222222222222222222222222222";
+    private static final String NULL_SHA = "0000000000000000000000000000000000000000";
+
+    @Test
+    public void parsesModification() throws VcsException {
+        GitRawDiff.Entry entry = GitRawDiff.parseLine(":100644 100644 " + SHA_1 + " " + SHA_2 + " M\tsrc/Main.java");
+        assertEquals(new GitRawDiff.Entry('M', "src/Main.java", "src/Main.java", SHA_1, SHA_2), entry);
+    }
+
+    @Test
+    public void parsesAdditionWithoutBeforeSide() throws VcsException {
+        GitRawDiff.Entry entry = GitRawDiff.parseLine(":000000 100644 " + NULL_SHA + " " + SHA_2 + " A\tnew.txt");
+        assertEquals(new GitRawDiff.Entry('A', null, "new.txt", null, SHA_2), entry);
+    }
+
+    @Test
+    public void parsesDeletionWithoutAfterSide() throws VcsException {
+        GitRawDiff.Entry entry = GitRawDiff.parseLine(":100644 000000 " + SHA_1 + " " + NULL_SHA + " D\told.txt");
+        assertEquals(new GitRawDiff.Entry('D', "old.txt", null, SHA_1, null), entry);
+    }
+
+    @Test
+    public void parsesRenameWithScore() throws VcsException {
+        GitRawDiff.Entry entry = GitRawDiff.parseLine(":100644 100644 " + SHA_1 + " " + SHA_2 + " R087\ta/Old.java\tb/New.java");
+        assertEquals(new GitRawDiff.Entry('R', "a/Old.java", "b/New.java", SHA_1, SHA_2), entry);
+    }
+
+    @Test
+    public void parsesCopy() throws VcsException {
+        GitRawDiff.Entry entry = GitRawDiff.parseLine(":100644 100644 " + SHA_1 + " " + SHA_1 + " C100\tsrc.txt\tcopy.txt");
+        assertEquals(new GitRawDiff.Entry('C', "src.txt", "copy.txt", SHA_1, SHA_1), entry);
+    }
+
+    @Test
+    public void unquotesPaths() throws VcsException {
+        GitRawDiff.Entry entry = GitRawDiff.parseLine(":100644 100644 " + SHA_1 + " " + SHA_2 + " M\t\"dir/with \\\"quote\\\".txt\"");
+        assertEquals("dir/with \"quote\".txt", entry.afterPath());
+    }
+
+    @Test
+    public void unquotesOctalEscapedUtf8() throws VcsException {
+        GitRawDiff.Entry entry = GitRawDiff.parseLine(":100644 100644 " + SHA_1 + " " + SHA_2 + " M\t\"\\303\\244.txt\"");
+        assertEquals("ä.txt", entry.afterPath());
+    }
+
+    @Test
+    public void splitsRenameAfterQuotedPathContainingEscapedTab() throws VcsException {
+        GitRawDiff.Entry entry = GitRawDiff.parseLine(":100644 100644 " + SHA_1 + " " + SHA_2 + " R100\t\"a\\tb.txt\"\tc.txt");
+        assertEquals("a\tb.txt", entry.beforePath());
+        assertEquals("c.txt", entry.afterPath());
+    }
+
+    @Test
+    public void ignoresLinesThatAreNotRecords() throws VcsException {
+        assertNull(GitRawDiff.parseLine(""));
+        assertNull(GitRawDiff.parseLine("warning: inexact rename detection was skipped"));
+    }
+
+    @Test(expected = VcsException.class)
+    public void rejectsRecordWithoutPath() throws VcsException {
+        GitRawDiff.parseLine(":100644 100644 " + SHA_1 + " " + SHA_2 + " M");
+    }
+
+    @Test(expected = VcsException.class)
+    public void rejectsRenameWithOnePath() throws VcsException {
+        GitRawDiff.parseLine(":100644 100644 " + SHA_1 + " " + SHA_2 + " R090\tonly.txt");
+    }
+}
@@ -0,0 +1,61 @@
+package utils;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PathPrefixIndexTest {
+
+    private final PathPrefixIndex<String> index = PathPrefixIndex.of(Map.of(
+            "/work/project", "project",
+            "/work/project/modules/lib", "lib",
+            "/work/other", "other"), true);
+
+    @Test
+    public void findsRootItself() {
+        assertEquals("project", index.findLongestPrefix("/work/project"));
+    }
+
+    @Test
+    public void findsInnermostRoot() {
+        assertEquals("lib", index.findLongestPrefix("/work/project/modules/lib/src/A.java"));
+        assertEquals("project", index.findLongestPrefix("/work/project/modules/app/src/A.java"));
+        assertEquals("other", index.findLongestPrefix("/work/other/README.md"));
+    }
+
+    @Test
+    public void matchesWholeSegmentsOnly() {
+        assertNull(index.findLongestPrefix("/work/projects/A.java"));
+        assertNull(index.findLongestPrefix("/work"));
+    }
+
+    @Test
+    public void ignoresRepeatedAndTrailingSeparators() {
+        assertEquals("lib", index.findLongestPrefix("/work//project/modules/lib/"));
+    }
+
+    @Test
+    public void caseSensitiveIndexKeepsCase() {
+        assertNull(index.findLongestPrefix("/Work/Project/A.java"));
+    }
+
+    @Test
+    public void caseInsensitiveIndexIgnoresCase() {
+        PathPrefixIndex<String> insensitive = PathPrefixIndex.of(Map.of(
+                "C:/Work/Project", "project",
+                "C:/Work/Project/Lib", "lib"), false);
+        assertEquals("project", insensitive.findLongestPrefix("c:/work/project/src/A.java"));
+        assertEquals("lib", insensitive.findLongestPrefix("C:/WORK/PROJECT/LIB/B.java"));
+    }
+
+    @Test
+    public void emptyIndexFindsNothing() {
+        PathPrefixIndex<String> empty = PathPrefixIndex.of(Map.of(), true);
+        assertTrue(empty.isEmpty());
+        assertNull(empty.findLongestPrefix("/work/project"));
+    }
+}
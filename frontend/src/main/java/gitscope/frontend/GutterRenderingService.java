@@ -15,18 +15,25 @@ import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.FileEditorManagerListener;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Computable;
-import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.VcsApplicationSettings;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.messages.MessageBusConnection;
+import implementation.gutter.IncrementalRangeTracker;
+import implementation.gutter.LineIndexedText;
 import implementation.gutter.Range;
 import implementation.gutter.RangesBuilder;
+import implementation.gutter.ThreeWayRangeEngine;
 import implementation.gutter.ScopeLineStatusMarkerRenderer;
 import org.jetbrains.annotations.NotNull;
 import service.GutterDataService;
 import system.Defs;
 
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -35,6 +42,13 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * <p>
  * Handles renderer lifecycle, document change listeners for live recomputation,
  * and file close cleanup.
+ * <p>
+ * Live recomputation is coalesced per document: at most one recompute runs and one more is pending, after a
+ * debounce that grows with the cost of the previous recompute. A result is dropped if the document or the
+ * backend data changed while it was being computed.
+ * <p>
+ * Between full recomputes, edits are applied incrementally on the EDT by an {@link IncrementalRangeTracker}
+ * that re-diffs only the lines around the edit; the coalesced full recompute is the fallback and reseeds it.
  */
 public class GutterRenderingService implements Disposable, GutterDataService.Listener {
     private static final Logger LOG = Defs.getLogger(GutterRenderingService.class);
@@ -45,16 +59,37 @@ public class GutterRenderingService implements Disposable, GutterDataService.Lis
     private final Map<Document, RendererInfo> renderers = new HashMap<>();
     private MessageBusConnection messageBusConnection;
 
+    // Debounce before a recompute: the duration of the previous recompute, within these bounds
+    private static final long MIN_RECOMPUTE_DELAY_MS = 30;
+    private static final long MAX_RECOMPUTE_DELAY_MS = 500;
+    private final ScheduledExecutorService recomputeExecutor =
+            AppExecutorUtil.createBoundedScheduledExecutorService("GitScopeGutterRecompute", 2);
+
     private static final class RendererInfo {
         volatile ScopeLineStatusMarkerRenderer renderer;
-        volatile String baseContent;
-        volatile String headContent;
-        volatile List<Range> scopeRanges;
+        // Published base with its line hashes
+        volatile LineIndexedText baseText;
+        // Scope ranges aligned to HEAD when the file has local changes; the document is then diffed against HEAD
+        volatile ThreeWayRangeEngine engine;
         volatile DocumentListener documentListener;
-
-        RendererInfo(ScopeLineStatusMarkerRenderer renderer, String baseContent) {
+        // Incremental ranges against the reference text; EDT only, null until a full recompute seeded it
+        IncrementalRangeTracker tracker;
+        // Bumped whenever the backend publishes new data, so results computed against older data are dropped
+        volatile int dataVersion;
+        volatile boolean released;
+        volatile long lastRecomputeMs;
+
+        // Recompute scheduling, guarded by this
+        ScheduledFuture<?> scheduledRecompute;
+        boolean recomputeRunning;
+        boolean recomputePending;
+        // Document stamp and data version the shown ranges were last computed from
+        long computedStamp = -1;
+        int computedDataVersion = -1;
+
+        RendererInfo(ScopeLineStatusMarkerRenderer renderer, LineIndexedText baseText) {
             this.renderer = renderer;
-            this.baseContent = baseContent;
+            this.baseText = baseText;
         }
     }
 
@@ -163,18 +198,22 @@ public class GutterRenderingService implements Disposable, GutterDataService.Lis
             LOG.info("GutterRenderingService.updateRenderer: CREATING new renderer for " + file.getPath());
             ScopeLineStatusMarkerRenderer renderer = new ScopeLineStatusMarkerRenderer(
                     project, document, file, this);
-            info = new RendererInfo(renderer, data.baseContent);
+            info = new RendererInfo(renderer, data.baseText);
             renderers.put(document, info);
 
             DocumentListener docListener = createDocumentListener(document, info);
             info.documentListener = docListener;
             document.addDocumentListener(docListener, this);
         } else {
-            info.baseContent = data.baseContent;
+            info.baseText = data.baseText;
         }
 
-        info.headContent = data.headContent;
-        info.scopeRanges = data.scopeRanges;
+        // The backend already aligned base and HEAD; edits only re-diff the document against HEAD
+        info.engine = data.headText != null && data.scopeRanges != null
+                ? ThreeWayRangeEngine.withScopeRanges(data.baseText, data.headText, data.scopeRanges) : null;
+        info.dataVersion++;
+        // The backend's ranges are not tied to a document stamp; the next full recompute reseeds the tracker
+        info.tracker = null;
         info.renderer.setVcsBaseContent(data.baseContent);
         info.renderer.updateRanges(data.ranges);
         LOG.info("GutterRenderingService.updateRenderer: applied " + data.ranges.size() + " ranges to " + file.getPath());
@@ -183,18 +222,101 @@ public class GutterRenderingService implements Disposable, GutterDataService.Lis
     private DocumentListener createDocumentListener(@NotNull Document document, @NotNull RendererInfo info) {
         return new DocumentListener() {
             @Override
-            public void documentChanged(@NotNull DocumentEvent event) {
-                if (disposed.get() || info.baseContent == null) return;
+            public void beforeDocumentChange(@NotNull DocumentEvent event) {
+                IncrementalRangeTracker tracker = info.tracker;
+                if (tracker != null) {
+                    tracker.beforeChange(event);
+                }
+            }
 
-                ApplicationManager.getApplication().executeOnPooledThread(() -> {
-                    if (!disposed.get()) {
-                        recalculateRangesAsync(document, info);
-                    }
-                });
+            @Override
+            public void documentChanged(@NotNull DocumentEvent event) {
+                if (disposed.get() || info.baseText == null) return;
+                if (!applyIncrementally(document, info, event)) {
+                    scheduleRecompute(document, info);
+                }
             }
         };
     }
 
+    /**
+     * Updates the ranges for one edit from the tracker, re-diffing only the edited window. Returns false if a
+     * full recompute is needed instead.
+     */
+    private boolean applyIncrementally(@NotNull Document document, @NotNull RendererInfo info,
+                                       @NotNull DocumentEvent event) {
+        IncrementalRangeTracker tracker = info.tracker;
+        if (tracker == null || info.renderer == null || !VcsApplicationSettings.getInstance().SHOW_LST_GUTTER_MARKERS) {
+            return false;
+        }
+        List<Range> referenceRanges = tracker.afterChange(event);
+        if (referenceRanges == null) {
+            info.tracker = null;
+            return false;
+        }
+        List<Range> ranges = toDisplayRanges(info, referenceRanges);
+        synchronized (info) {
+            // A scheduled full recompute of this same content is skipped
+            info.computedStamp = document.getModificationStamp();
+            info.computedDataVersion = info.dataVersion;
+        }
+        info.renderer.updateRanges(ranges);
+        return true;
+    }
+
+    /**
+     * Turns ranges against the tracker's reference text (HEAD when the file has local changes, the scope base
+     * otherwise) into the ranges to paint.
+     */
+    private static List<Range> toDisplayRanges(@NotNull RendererInfo info, @NotNull List<Range> referenceRanges) {
+        ThreeWayRangeEngine engine = info.engine;
+        return engine != null ? engine.toCurrentSpace(referenceRanges) : referenceRanges;
+    }
+
+    /**
+     * Requests a recompute of the document's ranges. A request while one is already scheduled is absorbed by
+     * it (the recompute reads the latest content); a request while one is running is remembered and scheduled
+     * once it has finished.
+     */
+    private void scheduleRecompute(@NotNull Document document, @NotNull RendererInfo info) {
+        synchronized (info) {
+            if (info.released || disposed.get()) return;
+            if (info.recomputeRunning) {
+                info.recomputePending = true;
+                return;
+            }
+            if (info.scheduledRecompute != null) return;
+            long delay = Math.min(MAX_RECOMPUTE_DELAY_MS, Math.max(MIN_RECOMPUTE_DELAY_MS, info.lastRecomputeMs));
+            try {
+                info.scheduledRecompute = recomputeExecutor.schedule(
+                        () -> runRecompute(document, info), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Service is being disposed
+            }
+        }
+    }
+
+    private void runRecompute(@NotNull Document document, @NotNull RendererInfo info) {
+        synchronized (info) {
+            info.scheduledRecompute = null;
+            if (info.released || disposed.get()) return;
+            info.recomputeRunning = true;
+        }
+        long start = System.nanoTime();
+        try {
+            recalculateRangesAsync(document, info);
+        } finally {
+            info.lastRecomputeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            synchronized (info) {
+                info.recomputeRunning = false;
+                if (info.recomputePending) {
+                    info.recomputePending = false;
+                    scheduleRecompute(document, info);
+                }
+            }
+        }
+    }
+
     private void recalculateRangesAsync(@NotNull Document document, @NotNull RendererInfo info) {
         try {
             if (!VcsApplicationSettings.getInstance().SHOW_LST_GUTTER_MARKERS) {
@@ -206,145 +328,58 @@ public class GutterRenderingService implements Disposable, GutterDataService.Lis
                 return;
             }
 
-            String currentContent = ApplicationManager.getApplication().runReadAction(
-                    (Computable<String>) () -> document.getImmutableCharSequence().toString());
-            String normalizedCurrent = StringUtil.convertLineSeparators(currentContent);
-
-            List<Range> filteredRanges;
-            if (info.headContent != null && info.scopeRanges != null) {
-                List<Range> localRanges = RangesBuilder.INSTANCE.createRanges(normalizedCurrent, info.headContent);
-                if (localRanges.isEmpty()) {
-                    filteredRanges = new ArrayList<>(info.scopeRanges);
-                } else {
-                    filteredRanges = mapScopeRangesToCurrentSpace(info.scopeRanges, localRanges);
+            final int dataVersion = info.dataVersion;
+            final long[] stamp = new long[1];
+            CharSequence currentContent = ApplicationManager.getApplication().runReadAction((Computable<CharSequence>) () -> {
+                stamp[0] = document.getModificationStamp();
+                synchronized (info) {
+                    if (stamp[0] == info.computedStamp && dataVersion == info.computedDataVersion) {
+                        return null; // Ranges already reflect this content
+                    }
                 }
+                return document.getImmutableCharSequence();
+            });
+            if (currentContent == null) return;
+
+            // Only the document is hashed here; the reference keeps the hashes of its published revision
+            LineIndexedText current = LineIndexedText.of(currentContent);
+            ThreeWayRangeEngine engine = info.engine;
+            final LineIndexedText reference;
+            final List<Range> referenceRanges;
+            final List<Range> rangesToApply;
+            if (engine != null) {
+                ThreeWayRangeEngine.Result result = engine.compute(current);
+                reference = engine.getHead();
+                referenceRanges = result.getLocalRanges();
+                rangesToApply = result.getRanges();
             } else {
-                filteredRanges = RangesBuilder.INSTANCE.createRanges(normalizedCurrent, info.baseContent);
+                reference = info.baseText;
+                referenceRanges = RangesBuilder.INSTANCE.createRanges(current, reference);
+                rangesToApply = referenceRanges;
             }
-
-            final List<Range> rangesToApply = filteredRanges;
+            final IncrementalRangeTracker tracker = new IncrementalRangeTracker(reference);
             ApplicationManager.getApplication().invokeLater(() -> {
-                if (!disposed.get() && info.renderer != null) {
-                    info.renderer.updateRanges(rangesToApply);
+                if (disposed.get() || info.released || info.renderer == null) return;
+                // Stale: the document was edited or the backend published new data meanwhile; the newer
+                // recompute or update brings the ranges
+                if (document.getModificationStamp() != stamp[0] || info.dataVersion != dataVersion) return;
+                synchronized (info) {
+                    info.computedStamp = stamp[0];
+                    info.computedDataVersion = dataVersion;
                 }
+                tracker.reset(referenceRanges, stamp[0]);
+                info.tracker = tracker;
+                info.renderer.updateRanges(rangesToApply);
             }, ModalityState.defaultModalityState());
         } catch (Exception e) {
             LOG.error("Error recalculating ranges", e);
         }
     }
 
-    /**
-     * Maps scope ranges from HEAD coordinate space into current-document space,
-     * splitting or suppressing portions that overlap with local changes.
-     * Same algorithm as MyLineStatusTrackerImpl.mapScopeRangesToCurrentSpace.
-     */
-    private List<Range> mapScopeRangesToCurrentSpace(List<Range> scopeRanges, List<Range> localRanges) {
-        List<Range> result = new ArrayList<>();
-        int numLocals = localRanges.size();
-        int cumulativeDelta = 0;
-        int localIdx = 0;
-
-        for (Range scope : scopeRanges) {
-            int headStart = scope.getLine1();
-            int headEnd = scope.getLine2();
-            int vcsStart = scope.getVcsLine1();
-            int vcsEnd = scope.getVcsLine2();
-
-            while (localIdx < numLocals && localRanges.get(localIdx).getVcsLine2() <= headStart) {
-                Range local = localRanges.get(localIdx);
-                cumulativeDelta += (local.getLine2() - local.getLine1())
-                        - (local.getVcsLine2() - local.getVcsLine1());
-                localIdx++;
-            }
-
-            if (headStart == headEnd) {
-                boolean insideLocal = false;
-                for (int i = localIdx; i < numLocals; i++) {
-                    Range local = localRanges.get(i);
-                    if (local.getVcsLine1() > headStart) break;
-                    if (local.getVcsLine2() > headStart) { insideLocal = true; break; }
-                }
-                if (!insideLocal) {
-                    int pos = headStart + cumulativeDelta;
-                    result.add(new Range(pos, pos, vcsStart, vcsEnd));
-                }
-                continue;
-            }
-
-            int tempLocalIdx = localIdx;
-            int headCursor;
-            int currentCursor;
-
-            if (tempLocalIdx < numLocals) {
-                Range straddle = localRanges.get(tempLocalIdx);
-                if (straddle.getVcsLine1() < headStart && straddle.getVcsLine2() > headStart) {
-                    headCursor = straddle.getVcsLine2();
-                    currentCursor = straddle.getLine2();
-                    tempLocalIdx++;
-                } else {
-                    headCursor = headStart;
-                    currentCursor = headStart + cumulativeDelta;
-                }
-            } else {
-                headCursor = headStart;
-                currentCursor = headStart + cumulativeDelta;
-            }
-
-            while (headCursor < headEnd) {
-                Range nextLocal = null;
-                if (tempLocalIdx < numLocals) {
-                    Range candidate = localRanges.get(tempLocalIdx);
-                    if (candidate.getVcsLine1() < headEnd) nextLocal = candidate;
-                }
-
-                if (nextLocal != null) {
-                    int localHeadStart = nextLocal.getVcsLine1();
-                    int localHeadEnd = nextLocal.getVcsLine2();
-
-                    if (localHeadStart > headCursor) {
-                        emitScopeSegment(result, headCursor, localHeadStart, currentCursor,
-                                headStart, headEnd, vcsStart, vcsEnd);
-                        currentCursor += (localHeadStart - headCursor);
-                    }
-
-                    headCursor = Math.max(headCursor, localHeadEnd);
-                    currentCursor = nextLocal.getLine2();
-                    tempLocalIdx++;
-                } else {
-                    emitScopeSegment(result, headCursor, headEnd, currentCursor,
-                            headStart, headEnd, vcsStart, vcsEnd);
-                    headCursor = headEnd;
-                }
-            }
-        }
-        return result;
-    }
-
-    private void emitScopeSegment(List<Range> result,
-                                  int headSegStart, int headSegEnd, int currentStart,
-                                  int headBlockStart, int headBlockEnd,
-                                  int vcsBlockStart, int vcsBlockEnd) {
-        int currentEnd = currentStart + (headSegEnd - headSegStart);
-        int headBlockLen = headBlockEnd - headBlockStart;
-        int segVcsStart, segVcsEnd;
-
-        if (headBlockLen == 0) {
-            segVcsStart = vcsBlockStart;
-            segVcsEnd = vcsBlockEnd;
-        } else {
-            long vcsLen = vcsBlockEnd - vcsBlockStart;
-            segVcsStart = vcsBlockStart + (int) (vcsLen * (headSegStart - headBlockStart) / headBlockLen);
-            segVcsEnd = vcsBlockStart + (int) (vcsLen * (headSegEnd - headBlockStart) / headBlockLen);
-        }
-
-        if (currentStart < currentEnd || segVcsStart < segVcsEnd) {
-            result.add(new Range(currentStart, currentEnd, segVcsStart, segVcsEnd));
-        }
-    }
-
     private synchronized void releaseRenderer(@NotNull Document document) {
         RendererInfo info = renderers.remove(document);
         if (info != null) {
+            cancelRecompute(info);
             if (info.documentListener != null) {
                 try { document.removeDocumentListener(info.documentListener); }
                 catch (Exception e) { LOG.warn("Error removing document listener", e); }
@@ -356,9 +391,23 @@ public class GutterRenderingService implements Disposable, GutterDataService.Lis
         }
     }
 
+    private static void cancelRecompute(@NotNull RendererInfo info) {
+        synchronized (info) {
+            info.released = true;
+            info.recomputePending = false;
+            if (info.scheduledRecompute != null) {
+                info.scheduledRecompute.cancel(false);
+                info.scheduledRecompute = null;
+            }
+        }
+    }
+
     private void releaseAllRenderers() {
         for (Map.Entry<Document, RendererInfo> entry : renderers.entrySet()) {
             RendererInfo info = entry.getValue();
+            if (info != null) {
+                cancelRecompute(info);
+            }
             if (info != null && info.renderer != null) {
                 try { info.renderer.dispose(); }
                 catch (Exception e) { LOG.warn("Error disposing renderer", e); }
@@ -372,6 +421,7 @@ public class GutterRenderingService implements Disposable, GutterDataService.Lis
         if (!disposed.compareAndSet(false, true)) return;
 
         gutterDataService.removeListener(this);
+        recomputeExecutor.shutdownNow();
 
         if (messageBusConnection != null) {
             messageBusConnection.disconnect();
@@ -0,0 +1,141 @@
+package implementation.gutter
+
+import com.intellij.openapi.editor.Document
+import com.intellij.openapi.editor.event.DocumentEvent
+import com.intellij.util.concurrency.annotations.RequiresEdt
+
+/**
+ * Keeps the changed line ranges of a document against a fixed reference text (scope base or HEAD content)
+ * up to date while the document is edited, without diffing the whole file.
+ *
+ * On each [DocumentEvent] the ranges touching the edited lines are replaced by a diff of a window that
+ * spans just those ranges and the edited lines; ranges after the edit are shifted by its line delta. When
+ * the window exceeds [MAX_WINDOW_LINES], or the tracker was not seeded for the document's current
+ * modification stamp, [afterChange] returns null and the caller has to run a full diff and [reset] the tracker.
+ *
+ * May be created on any thread; afterwards used from document listeners and EDT callbacks only, so it is not
+ * synchronized.
+ */
+class IncrementalRangeTracker(private val reference: LineIndexedText) {
+
+    private var ranges: List<Range>? = null
+    private var stamp: Long = -1
+
+    // Line span of the pending edit in the document before the change, [editStartLine, editEndLine)
+    private var editStartLine = -1
+    private var editEndLine = -1
+
+    /**
+     * Seeds the tracker with ranges from a full diff of the document at [stamp].
+     */
+    @RequiresEdt
+    fun reset(ranges: List<Range>, stamp: Long) {
+        this.ranges = ranges
+        this.stamp = stamp
+        editStartLine = -1
+    }
+
+    @RequiresEdt
+    fun invalidate() {
+        ranges = null
+        editStartLine = -1
+    }
+
+    /**
+     * Records the lines the edit is about to replace. Must be called from `beforeDocumentChange`.
+     */
+    @RequiresEdt
+    fun beforeChange(event: DocumentEvent) {
+        val document = event.document
+        if (ranges == null || document.modificationStamp != stamp) {
+            invalidate()
+            return
+        }
+        editStartLine = document.getLineNumber(event.offset)
+        editEndLine = document.getLineNumber(event.offset + event.oldLength) + 1
+    }
+
+    /**
+     * Updates the ranges for the edit recorded by [beforeChange]. Must be called from `documentChanged`.
+     *
+     * @return the ranges of the edited document, or null if a full diff is needed
+     */
+    @RequiresEdt
+    fun afterChange(event: DocumentEvent): List<Range>? {
+        val current = ranges ?: return null
+        if (editStartLine < 0) return null
+        val document = event.document
+        val startLine = editStartLine
+        val oldEndLine = editEndLine
+        editStartLine = -1
+
+        val newEndLine = document.getLineNumber(event.offset + event.newLength) + 1
+        val delta = newEndLine - oldEndLine
+
+        // Ranges touching the edited lines are re-diffed; the ones before stay, the ones after are shifted
+        var first = 0
+        var deltaBefore = 0
+        while (first < current.size && current[first].line2 < startLine) {
+            deltaBefore += lineDelta(current[first])
+            first++
+        }
+        var last = first - 1
+        var deltaAffected = 0
+        while (last + 1 < current.size && current[last + 1].line1 <= oldEndLine) {
+            last++
+            deltaAffected += lineDelta(current[last])
+        }
+
+        val windowStart = if (last >= first) minOf(startLine, current[first].line1) else startLine
+        val windowEnd = if (last >= first) maxOf(oldEndLine, current[last].line2) else oldEndLine
+        val newWindowEnd = windowEnd + delta
+        val vcsStart = windowStart - deltaBefore
+        val vcsEnd = windowEnd - deltaBefore - deltaAffected
+
+        if (vcsStart < 0 || vcsEnd < vcsStart || vcsEnd > reference.lineCount
+            || newWindowEnd < windowStart || newWindowEnd > maxOf(document.lineCount, 1)
+            || maxOf(newWindowEnd - windowStart, vcsEnd - vcsStart) > MAX_WINDOW_LINES) {
+            invalidate()
+            return null
+        }
+
+        val windowRanges = diffWindow(document, windowStart, newWindowEnd, vcsStart, vcsEnd) ?: run {
+            invalidate()
+            return null
+        }
+
+        val updated = ArrayList<Range>(current.size - (last - first + 1) + windowRanges.size)
+        for (i in 0 until first) updated.add(current[i])
+        updated.addAll(windowRanges)
+        for (i in last + 1 until current.size) {
+            val range = current[i]
+            updated.add(Range(range.line1 + delta, range.line2 + delta, range.vcsLine1, range.vcsLine2))
+        }
+        ranges = updated
+        stamp = document.modificationStamp
+        return updated
+    }
+
+    private fun diffWindow(document: Document, start: Int, end: Int, vcsStart: Int, vcsEnd: Int): List<Range>? {
+        if (start == end && vcsStart == vcsEnd) return emptyList()
+        // An empty side would be compared as one empty line, so pure insertions and deletions are built directly
+        if (start == end || vcsStart == vcsEnd) return listOf(Range(start, end, vcsStart, vcsEnd))
+
+        // Only the window of the document is indexed and hashed; the reference keeps its hashes across edits.
+        // The window ends without the line break of its last line, so the end of the file compares like any window.
+        val window = LineIndexedText.of(
+            document.immutableCharSequence.subSequence(document.getLineStartOffset(start), document.getLineEndOffset(end - 1))
+        )
+        // Null when the window is too big to diff: a full recompute takes over rather than clearing its markers
+        return RangesBuilder.createRangesOrNull(window, 0, window.lineCount, reference, vcsStart, vcsEnd)?.map { range ->
+            Range(start + range.line1, start + range.line2, range.vcsLine1, range.vcsLine2)
+        }
+    }
+
+    private fun lineDelta(range: Range): Int = (range.line2 - range.line1) - (range.vcsLine2 - range.vcsLine1)
+
+    companion object {
+        /** Larger windows fall back to a full diff. */
+        const val MAX_WINDOW_LINES = 2000
+    }
+}
@@ -0,0 +1,171 @@
+package implementation.gutter;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class IncrementalRangeTrackerTest extends BasePlatformTestCase {
+
+    private Document document;
+    private LineIndexedText reference;
+    private IncrementalRangeTracker tracker;
+    private List<Range> lastRanges;
+    private int fullDiffs;
+
+    private void init(String referenceText, String documentText) {
+        reference = LineIndexedText.of(referenceText);
+        document = EditorFactory.getInstance().createDocument(documentText);
+        tracker = new IncrementalRangeTracker(reference);
+        document.addDocumentListener(new DocumentListener() {
+            @Override
+            public void beforeDocumentChange(@NotNull DocumentEvent event) {
+                tracker.beforeChange(event);
+            }
+
+            @Override
+            public void documentChanged(@NotNull DocumentEvent event) {
+                lastRanges = tracker.afterChange(event);
+                if (lastRanges == null) {
+                    // What the renderer does: a full diff re-seeds the tracker
+                    fullDiffs++;
+                    lastRanges = fullDiff();
+                    tracker.reset(lastRanges, document.getModificationStamp());
+                }
+            }
+        }, getTestRootDisposable());
+        lastRanges = fullDiff();
+        tracker.reset(lastRanges, document.getModificationStamp());
+    }
+
+    public void testEditBelowRangeKeepsIt() {
+        init(lines("a", "b", "c", "d", "e"), lines("a", "x", "c", "d", "e"));
+        edit(() -> document.insertString(document.getLineStartOffset(3), "new\n"));
+        assertEquals(0, fullDiffs);
+        assertRanges("[1, 2) - [1, 2)", "[3, 3) - [3, 4)");
+    }
+
+    public void testEditAboveRangeShiftsIt() {
+        init(lines("a", "b", "c", "d", "e"), lines("a", "b", "c", "x", "e"));
+        edit(() -> document.insertString(0, "new\nnew\n"));
+        assertEquals(0, fullDiffs);
+        assertRanges("[0, 0) - [0, 2)", "[3, 4) - [5, 6)");
+    }
+
+    public void testRevertingAnEditRemovesItsRange() {
+        init(lines("a", "b", "c"), lines("a", "x", "c"));
+        edit(() -> document.replaceString(document.getLineStartOffset(1), document.getLineEndOffset(1), "b"));
+        assertEquals(0, fullDiffs);
+        assertRanges();
+    }
+
+    public void testEditInsideRangeMergesWithIt() {
+        init(lines("a", "b", "c", "d"), lines("a", "x", "y", "d"));
+        edit(() -> document.deleteString(document.getLineStartOffset(2), document.getLineStartOffset(3)));
+        assertEquals(0, fullDiffs);
+        assertRanges("[1, 3) - [1, 2)");
+    }
+
+    public void testEditAtEndOfFile() {
+        init(lines("a", "b"), lines("a", "b"));
+        edit(() -> document.insertString(document.getTextLength(), "\nc"));
+        assertEquals(0, fullDiffs);
+        assertRanges("[2, 2) - [2, 3)");
+    }
+
+    public void testStaleStampNeedsFullDiff() {
+        init(lines("a", "b", "c"), lines("a", "b", "c"));
+        tracker.reset(List.of(), document.getModificationStamp() - 1);
+        edit(() -> document.insertString(0, "x"));
+        assertEquals(1, fullDiffs);
+    }
+
+    public void testWindowAboveLimitNeedsFullDiff() {
+        int lineCount = IncrementalRangeTracker.MAX_WINDOW_LINES + 10;
+        StringBuilder referenceText = new StringBuilder();
+        StringBuilder documentText = new StringBuilder();
+        for (int i = 0; i < lineCount; i++) {
+            referenceText.append("old").append(i).append('\n');
+            documentText.append("new").append(i).append('\n');
+        }
+        init(referenceText.toString(), documentText.toString());
+        edit(() -> document.insertString(document.getLineStartOffset(lineCount / 2), "x"));
+        assertEquals(1, fullDiffs);
+    }
+
+    public void testRandomEditsKeepValidRanges() {
+        Random random = new Random(7);
+        String[] initial = new String[40];
+        for (int i = 0; i < initial.length; i++) {
+            initial[i] = randomLine(random);
+        }
+        init(String.join("\n", initial), String.join("\n", initial));
+        for (int i = 0; i < 300; i++) {
+            int line = random.nextInt(document.getLineCount());
+            switch (random.nextInt(3)) {
+                case 0 -> edit(() -> document.insertString(document.getLineStartOffset(line), randomLine(random) + "\n"));
+                case 1 -> edit(() -> {
+                    if (line + 1 < document.getLineCount()) {
+                        document.deleteString(document.getLineStartOffset(line), document.getLineStartOffset(line + 1));
+                    }
+                });
+                default -> edit(() -> document.replaceString(document.getLineStartOffset(line),
+                        document.getLineEndOffset(line), randomLine(random)));
+            }
+            assertValid(lastRanges);
+        }
+    }
+
+    private List<Range> fullDiff() {
+        return RangesBuilder.INSTANCE.createRanges(LineIndexedText.of(document.getImmutableCharSequence()), reference);
+    }
+
+    private void edit(Runnable change) {
+        WriteCommandAction.runWriteCommandAction(getProject(), change);
+    }
+
+    private void assertRanges(String... expected) {
+        List<String> actual = new ArrayList<>();
+        for (Range range : lastRanges) {
+            actual.add(range.toString());
+        }
+        assertEquals(List.of(expected), actual);
+        assertValid(lastRanges);
+    }
+
+    // Ranges are sorted, disjoint, and the lines between them are equal in the document and the reference
+    private void assertValid(List<Range> ranges) {
+        String[] current = document.getText().split("\n", -1);
+        String[] vcs = reference.toString().split("\n", -1);
+        int line = 0;
+        int vcsLine = 0;
+        for (Range range : ranges) {
+            assertTrue(range.toString(), range.getLine1() >= line && range.getVcsLine1() >= vcsLine);
+            assertEquals(range.getLine1() - line, range.getVcsLine1() - vcsLine);
+            for (int i = 0; i < range.getLine1() - line; i++) {
+                assertEquals(vcs[vcsLine + i], current[line + i]);
+            }
+            line = range.getLine2();
+            vcsLine = range.getVcsLine2();
+        }
+        assertEquals(current.length - line, vcs.length - vcsLine);
+        for (int i = 0; i < current.length - line; i++) {
+            assertEquals(vcs[vcsLine + i], current[line + i]);
+        }
+    }
+
+    private static String lines(String... lines) {
+        return String.join("\n", lines);
+    }
+
+    private static String randomLine(Random random) {
+        return String.valueOf((char) ('a' + random.nextInt(5)));
+    }
+}
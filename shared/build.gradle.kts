@@ -1,3 +1,5 @@
+import org.jetbrains.intellij.platform.gradle.TestFrameworkType
+
 plugins {
     id("org.jetbrains.intellij.platform.module")
     id("java")
@@ -16,5 +18,10 @@ dependencies {
     intellijPlatform {
         intellijIdea(providers.gradleProperty("platformVersion"))
         bundledModule("intellij.platform.rpc")
+        testFramework(TestFrameworkType.Platform)
     }
+
+    testImplementation("junit:junit:4.13.2")
+    // Needed by the platform test framework when running JUnit 4 tests
+    testImplementation("org.opentest4j:opentest4j:1.3.0")
 }
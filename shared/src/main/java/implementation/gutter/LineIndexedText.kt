@@ -0,0 +1,93 @@
+package implementation.gutter
+
+import com.intellij.openapi.util.text.StringUtil
+
+/**
+ * Read-only text with line separators normalised to `\n`, plus the start offset of every line and (computed on
+ * first use) a hash per line. Text without `\r`, which includes every editor document, is wrapped as is, so
+ * document and revision contents can be diffed by [RangesBuilder] without copying them; only text with CR or
+ * CRLF separators is normalised into a copy once.
+ *
+ * Lines are counted like the diff utilities count them: `"a\nb"` and `"a\n"` both have two lines, `""` has one.
+ * The wrapped text must not change; pass immutable sequences (strings, `Document.getImmutableCharSequence()`).
+ */
+class LineIndexedText private constructor(private val text: CharSequence) : CharSequence {
+
+    private val lineStarts: IntArray = indexLines(text)
+
+    @Volatile
+    private var lineHashes: IntArray? = null
+
+    override val length: Int
+        get() = text.length
+
+    override fun get(index: Int): Char = text[index]
+
+    override fun subSequence(startIndex: Int, endIndex: Int): CharSequence = text.subSequence(startIndex, endIndex)
+
+    /** The normalised text; no copy for wrapped strings. */
+    override fun toString(): String = text.toString()
+
+    val lineCount: Int
+        get() = lineStarts.size
+
+    fun getLineStart(line: Int): Int = lineStarts[line]
+
+    /** End offset of [line], excluding its line break. */
+    fun getLineEnd(line: Int): Int = if (line + 1 < lineStarts.size) lineStarts[line + 1] - 1 else text.length
+
+    /**
+     * The text of lines `[startLine, endLine)` without the line break of the last one; empty for no lines.
+     */
+    fun linesSequence(startLine: Int, endLine: Int): CharSequence =
+        if (startLine >= endLine) "" else text.subSequence(getLineStart(startLine), getLineEnd(endLine - 1))
+
+    fun lineHash(line: Int): Int = (lineHashes ?: computeLineHashes()).get(line)
+
+    /** Whether [line] has the same content as [otherLine] of [other]. */
+    fun lineEquals(line: Int, other: LineIndexedText, otherLine: Int): Boolean {
+        if (lineHash(line) != other.lineHash(otherLine)) return false
+        val start = getLineStart(line)
+        val length = getLineEnd(line) - start
+        val otherStart = other.getLineStart(otherLine)
+        if (other.getLineEnd(otherLine) - otherStart != length) return false
+        for (i in 0 until length) {
+            if (text[start + i] != other.text[otherStart + i]) return false
+        }
+        return true
+    }
+
+    private fun computeLineHashes(): IntArray {
+        val hashes = IntArray(lineStarts.size)
+        for (line in hashes.indices) {
+            var hash = 0
+            for (i in getLineStart(line) until getLineEnd(line)) {
+                hash = 31 * hash + text[i].code
+            }
+            hashes[line] = hash
+        }
+        lineHashes = hashes
+        return hashes
+    }
+
+    companion object {
+        @JvmStatic
+        fun of(text: CharSequence): LineIndexedText {
+            if (text is LineIndexedText) return text
+            return LineIndexedText(if (StringUtil.indexOf(text, '\r') >= 0) StringUtil.convertLineSeparators(text.toString()) else text)
+        }
+
+        private fun indexLines(text: CharSequence): IntArray {
+            var count = 1
+            for (i in 0 until text.length) {
+                if (text[i] == '\n') count++
+            }
+            val starts = IntArray(count)
+            var line = 1
+            for (i in 0 until text.length) {
+                if (text[i] == '\n') starts[line++] = i + 1
+            }
+            return starts
+        }
+    }
+}
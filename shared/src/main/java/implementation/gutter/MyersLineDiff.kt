@@ -0,0 +1,105 @@
+package implementation.gutter
+
+/**
+ * Myers' O((N+M)D) line diff over [LineIndexedText] line hashes; equal hashes are confirmed by comparing the
+ * lines, so collisions cannot produce wrong matches. Fast when the sides differ in few lines, which is the
+ * common case for HEAD against the scope base; gives up once more than `maxEdits` lines differ. Unlike the
+ * platform diff it does not post-process ambiguous hunk boundaries, so it is only used where its alignment is
+ * not shown next to the IDE's own markers.
+ */
+object MyersLineDiff {
+
+    /**
+     * Changed blocks between lines `[start, end)` of [current] and `[vcsStart, vcsEnd)` of [vcs], in the
+     * coordinates of the whole texts, or null if more than [maxEdits] lines are inserted or deleted.
+     */
+    fun compare(current: LineIndexedText, start: Int, end: Int,
+                vcs: LineIndexedText, vcsStart: Int, vcsEnd: Int, maxEdits: Int): List<Range>? {
+        val n = vcsEnd - vcsStart
+        val m = end - start
+        val limit = minOf(maxEdits, n + m)
+        val offset = limit + 1
+        val v = IntArray(2 * limit + 3)
+        // v after each step d, restricted to the diagonals -d..d, for the backtrack
+        val trace = ArrayList<IntArray>()
+
+        for (d in 0..limit) {
+            var k = -d
+            while (k <= d) {
+                var x = if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    v[offset + k + 1]
+                } else {
+                    v[offset + k - 1] + 1
+                }
+                var y = x - k
+                while (x < n && y < m && vcs.lineEquals(vcsStart + x, current, start + y)) {
+                    x++
+                    y++
+                }
+                v[offset + k] = x
+                if (x >= n && y >= m) {
+                    trace.add(v.copyOfRange(offset - d, offset + d + 1))
+                    return toRanges(trace, n, m, start, vcsStart)
+                }
+                k += 2
+            }
+            trace.add(v.copyOfRange(offset - d, offset + d + 1))
+        }
+        return null
+    }
+
+    private fun toRanges(trace: List<IntArray>, n: Int, m: Int, start: Int, vcsStart: Int): List<Range> {
+        // Walk back from (n, m); every step ends with a run of matching lines (a snake)
+        val snakeX = ArrayList<Int>()
+        val snakeY = ArrayList<Int>()
+        val snakeLength = ArrayList<Int>()
+        var x = n
+        var y = m
+        for (d in trace.size - 1 downTo 0) {
+            val k = x - y
+            val prevX: Int
+            val prevY: Int
+            if (d == 0) {
+                prevX = 0
+                prevY = 0
+            } else {
+                val prev = trace[d - 1]
+                val down = k == -d || (k != d && prev[k - 1 + d - 1] < prev[k + 1 + d - 1])
+                val prevK = if (down) k + 1 else k - 1
+                val edgeX = prev[prevK + d - 1]
+                // The edit leads from (edgeX, edgeX - prevK) to the start of this step's snake
+                prevX = if (down) edgeX else edgeX + 1
+                prevY = prevX - k
+            }
+            if (x > prevX) {
+                snakeX.add(prevX)
+                snakeY.add(prevY)
+                snakeLength.add(x - prevX)
+            }
+            if (d > 0) {
+                val prev = trace[d - 1]
+                val down = k == -d || (k != d && prev[k - 1 + d - 1] < prev[k + 1 + d - 1])
+                val prevK = if (down) k + 1 else k - 1
+                x = prev[prevK + d - 1]
+                y = x - prevK
+            }
+        }
+
+        val ranges = ArrayList<Range>()
+        var px = 0
+        var py = 0
+        for (i in snakeX.indices.reversed()) {
+            val sx = snakeX[i]
+            val sy = snakeY[i]
+            if (sx > px || sy > py) {
+                ranges.add(Range(start + py, start + sy, vcsStart + px, vcsStart + sx))
+            }
+            px = sx + snakeLength[i]
+            py = sy + snakeLength[i]
+        }
+        if (px < n || py < m) {
+            ranges.add(Range(start + py, start + m, vcsStart + px, vcsStart + n))
+        }
+        return ranges
+    }
+}
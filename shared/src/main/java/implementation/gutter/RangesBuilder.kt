@@ -12,6 +12,10 @@ import com.intellij.openapi.progress.DumbProgressIndicator
 /**
  * Creates ranges by comparing current document with VCS base revision.
  * Uses IntelliJ's diff utilities to compute line-level differences.
+ * Texts are diffed through [LineIndexedText] views, without copying them; leading and trailing lines that are
+ * equal on both sides are skipped by their hashes, so only the differing middle is handed to the diff.
+ * Base and HEAD texts keep their line hashes, so a recompute only hashes the current document; the two
+ * revisions themselves are aligned by a diff over those hashes.
  */
 object RangesBuilder {
 
@@ -20,20 +24,83 @@ object RangesBuilder {
     }
 
     fun createRanges(current: CharSequence, vcs: CharSequence): List<Range> {
+        return createRanges(LineIndexedText.of(current), LineIndexedText.of(vcs))
+    }
+
+    fun createRanges(current: LineIndexedText, vcs: LineIndexedText): List<Range> {
+        return createRanges(current, 0, current.lineCount, vcs, 0, vcs.lineCount)
+    }
+
+    /**
+     * Ranges between lines `[start, end)` of [current] and `[vcsStart, vcsEnd)` of [vcs], in the coordinates of
+     * the whole texts, aligned by the platform diff like the IDE's own gutter markers; empty if the texts are
+     * too different to diff.
+     */
+    fun createRanges(current: LineIndexedText, start: Int, end: Int,
+                     vcs: LineIndexedText, vcsStart: Int, vcsEnd: Int): List<Range> {
+        return diff(current, start, end, vcs, vcsStart, vcsEnd, false) ?: emptyList()
+    }
+
+    /**
+     * Like [createRanges], but null if the texts are too different to diff, so the caller can fall back.
+     */
+    fun createRangesOrNull(current: LineIndexedText, start: Int, end: Int,
+                           vcs: LineIndexedText, vcsStart: Int, vcsEnd: Int): List<Range>? {
+        return diff(current, start, end, vcs, vcsStart, vcsEnd, false)
+    }
+
+    /**
+     * Ranges between two revisions ([head] against the scope [base]), whose alignment is never shown next to
+     * the IDE's markers. Few differing lines are diffed by [MyersLineDiff] over the cached line hashes; heavily
+     * changed texts fall back to the platform diff.
+     */
+    fun createRevisionRanges(head: LineIndexedText, base: LineIndexedText): List<Range> {
+        return diff(head, 0, head.lineCount, base, 0, base.lineCount, true) ?: emptyList()
+    }
+
+    private fun diff(current: LineIndexedText, start: Int, end: Int,
+                     vcs: LineIndexedText, vcsStart: Int, vcsEnd: Int, hashDiff: Boolean): List<Range>? {
+        var prefix = 0
+        while (start + prefix < end && vcsStart + prefix < vcsEnd
+            && current.lineEquals(start + prefix, vcs, vcsStart + prefix)) {
+            prefix++
+        }
+        if (start + prefix == end && vcsStart + prefix == vcsEnd) return emptyList()
+        var suffix = 0
+        while (start + prefix + suffix < end && vcsStart + prefix + suffix < vcsEnd
+            && current.lineEquals(end - 1 - suffix, vcs, vcsEnd - 1 - suffix)) {
+            suffix++
+        }
+
+        val from = start + prefix
+        val to = end - suffix
+        val vcsFrom = vcsStart + prefix
+        val vcsTo = vcsEnd - suffix
+        // An empty side would be compared as one empty line, so pure insertions and deletions are built directly
+        if (from == to || vcsFrom == vcsTo) return listOf(Range(from, to, vcsFrom, vcsTo))
+
+        if (hashDiff) {
+            MyersLineDiff.compare(current, from, to, vcs, vcsFrom, vcsTo, MAX_HASH_DIFF_EDITS)?.let { return it }
+        }
+
         return try {
             val fragments = ComparisonManager.getInstance().compareLines(
-                vcs, current, ComparisonPolicy.DEFAULT, DumbProgressIndicator.INSTANCE
+                vcs.linesSequence(vcsFrom, vcsTo), current.linesSequence(from, to),
+                ComparisonPolicy.DEFAULT, DumbProgressIndicator.INSTANCE
             )
             fragments.map { fragment ->
                 Range(
-                    line1 = fragment.startLine2,
-                    line2 = fragment.endLine2,
-                    vcsLine1 = fragment.startLine1,
-                    vcsLine2 = fragment.endLine1
+                    line1 = from + fragment.startLine2,
+                    line2 = from + fragment.endLine2,
+                    vcsLine1 = vcsFrom + fragment.startLine1,
+                    vcsLine2 = vcsFrom + fragment.endLine1
                 )
             }
         } catch (e: DiffTooBigException) {
-            emptyList()
+            null
         }
     }
+
+    /** Inserted plus deleted lines up to which the hash diff is used. */
+    private const val MAX_HASH_DIFF_EDITS = 500
 }
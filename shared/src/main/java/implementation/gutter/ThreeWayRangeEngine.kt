@@ -0,0 +1,155 @@
+package implementation.gutter
+
+/**
+ * Ranges of a document whose file has both scope and local changes, from three texts: the scope base, HEAD and
+ * the current document. The base↔HEAD alignment ([scopeRanges], in HEAD space) depends only on the two
+ * revisions, so it is computed once per engine (by a diff over the cached line hashes) and reused while the
+ * document is edited; each [compute] then costs one diff of the document against HEAD, aligned by the platform
+ * diff like the IDE's own markers, plus a single merge over both range lists.
+ *
+ * Immutable and thread-safe; keep one engine per base/HEAD pair.
+ */
+class ThreeWayRangeEngine private constructor(
+    val base: LineIndexedText,
+    val head: LineIndexedText,
+    /** Scope changes: HEAD against the scope base, in HEAD space. */
+    val scopeRanges: List<Range>
+) {
+
+    constructor(base: LineIndexedText, head: LineIndexedText) : this(base, head, RangesBuilder.createRevisionRanges(head, base))
+
+    /**
+     * @property ranges scope ranges in current-document space, with the lines of local changes cut out
+     * @property localRanges local changes: the current document against HEAD, in current-document space
+     * @property scopeRanges scope ranges in HEAD space
+     */
+    class Result(val ranges: List<Range>, val localRanges: List<Range>, val scopeRanges: List<Range>)
+
+    /** Whether this engine aligns exactly these texts (by identity), i.e. can be reused for them. */
+    fun matches(base: LineIndexedText, head: LineIndexedText): Boolean = this.base === base && this.head === head
+
+    fun compute(current: LineIndexedText): Result {
+        val localRanges = RangesBuilder.createRanges(current, head)
+        return Result(toCurrentSpace(localRanges), localRanges, scopeRanges)
+    }
+
+    /**
+     * Scope ranges in current-document space for the given local ranges (e.g. kept up to date incrementally).
+     */
+    fun toCurrentSpace(localRanges: List<Range>): List<Range> {
+        if (scopeRanges.isEmpty()) return emptyList()
+        if (localRanges.isEmpty()) return ArrayList(scopeRanges)
+        return mapScopeRangesToCurrentSpace(scopeRanges, localRanges)
+    }
+
+    companion object {
+        /**
+         * An engine for scope ranges that were already computed, e.g. published by the backend.
+         */
+        @JvmStatic
+        fun withScopeRanges(base: LineIndexedText, head: LineIndexedText, scopeRanges: List<Range>): ThreeWayRangeEngine =
+            ThreeWayRangeEngine(base, head, scopeRanges)
+
+        /**
+         * Maps scope ranges from HEAD space into current-document space, splitting or suppressing the portions
+         * that overlap local changes. Both lists are sorted, so one merge pass over them suffices.
+         */
+        private fun mapScopeRangesToCurrentSpace(scopeRanges: List<Range>, localRanges: List<Range>): List<Range> {
+            val result = ArrayList<Range>()
+            val numLocals = localRanges.size
+            var cumulativeDelta = 0
+            var localIdx = 0
+
+            for (scope in scopeRanges) {
+                val headStart = scope.line1
+                val headEnd = scope.line2
+                val vcsStart = scope.vcsLine1
+                val vcsEnd = scope.vcsLine2
+
+                while (localIdx < numLocals && localRanges[localIdx].vcsLine2 <= headStart) {
+                    val local = localRanges[localIdx]
+                    cumulativeDelta += (local.line2 - local.line1) - (local.vcsLine2 - local.vcsLine1)
+                    localIdx++
+                }
+
+                if (headStart == headEnd) {
+                    var insideLocal = false
+                    for (i in localIdx until numLocals) {
+                        val local = localRanges[i]
+                        if (local.vcsLine1 > headStart) break
+                        if (local.vcsLine2 > headStart) {
+                            insideLocal = true
+                            break
+                        }
+                    }
+                    if (!insideLocal) {
+                        val pos = headStart + cumulativeDelta
+                        result.add(Range(pos, pos, vcsStart, vcsEnd))
+                    }
+                    continue
+                }
+
+                var tempLocalIdx = localIdx
+                var headCursor = headStart
+                var currentCursor = headStart + cumulativeDelta
+                if (tempLocalIdx < numLocals) {
+                    val straddle = localRanges[tempLocalIdx]
+                    if (straddle.vcsLine1 < headStart && straddle.vcsLine2 > headStart) {
+                        headCursor = straddle.vcsLine2
+                        currentCursor = straddle.line2
+                        tempLocalIdx++
+                    }
+                }
+
+                while (headCursor < headEnd) {
+                    val nextLocal = if (tempLocalIdx < numLocals && localRanges[tempLocalIdx].vcsLine1 < headEnd) {
+                        localRanges[tempLocalIdx]
+                    } else {
+                        null
+                    }
+
+                    if (nextLocal != null) {
+                        val localHeadStart = nextLocal.vcsLine1
+                        if (localHeadStart > headCursor) {
+                            emitScopeSegment(result, headCursor, localHeadStart, currentCursor,
+                                headStart, headEnd, vcsStart, vcsEnd)
+                            currentCursor += localHeadStart - headCursor
+                        }
+                        headCursor = maxOf(headCursor, nextLocal.vcsLine2)
+                        currentCursor = nextLocal.line2
+                        tempLocalIdx++
+                    } else {
+                        emitScopeSegment(result, headCursor, headEnd, currentCursor,
+                            headStart, headEnd, vcsStart, vcsEnd)
+                        headCursor = headEnd
+                    }
+                }
+            }
+            return result
+        }
+
+        private fun emitScopeSegment(result: MutableList<Range>,
+                                     headSegStart: Int, headSegEnd: Int, currentStart: Int,
+                                     headBlockStart: Int, headBlockEnd: Int,
+                                     vcsBlockStart: Int, vcsBlockEnd: Int) {
+            val currentEnd = currentStart + (headSegEnd - headSegStart)
+            val headBlockLen = headBlockEnd - headBlockStart
+            val segVcsStart: Int
+            val segVcsEnd: Int
+
+            if (headBlockLen == 0) {
+                segVcsStart = vcsBlockStart
+                segVcsEnd = vcsBlockEnd
+            } else {
+                // The part of the base block proportional to the segment's share of the HEAD block
+                val vcsLen = (vcsBlockEnd - vcsBlockStart).toLong()
+                segVcsStart = vcsBlockStart + (vcsLen * (headSegStart - headBlockStart) / headBlockLen).toInt()
+                segVcsEnd = vcsBlockStart + (vcsLen * (headSegEnd - headBlockStart) / headBlockLen).toInt()
+            }
+
+            if (currentStart < currentEnd || segVcsStart < segVcsEnd) {
+                result.add(Range(currentStart, currentEnd, segVcsStart, segVcsEnd))
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package service;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import implementation.gutter.LineIndexedText;
 import implementation.gutter.Range;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -41,6 +42,12 @@ public class GutterDataService implements Disposable {
          * (navigation runs on the backend, so the frontend does not need this field).
          */
         public final @Nullable List<Range> localRanges;
+        /**
+         * Line-indexed views of {@link #baseContent} and {@link #headContent}. Their line hashes are computed
+         * once and reused by every recompute of the file, which then only hashes the current document.
+         */
+        public final @NotNull LineIndexedText baseText;
+        public final @Nullable LineIndexedText headText;
 
         public GutterFileData(@NotNull List<Range> ranges,
                               @NotNull String baseContent,
@@ -54,9 +61,20 @@ public class GutterDataService implements Disposable {
                               @Nullable String headContent,
                               @Nullable List<Range> scopeRanges,
                               @Nullable List<Range> localRanges) {
+            this(ranges, LineIndexedText.of(baseContent), headContent != null ? LineIndexedText.of(headContent) : null,
+                    scopeRanges, localRanges);
+        }
+
+        public GutterFileData(@NotNull List<Range> ranges,
+                              @NotNull LineIndexedText baseText,
+                              @Nullable LineIndexedText headText,
+                              @Nullable List<Range> scopeRanges,
+                              @Nullable List<Range> localRanges) {
             this.ranges = ranges;
-            this.baseContent = baseContent;
-            this.headContent = headContent;
+            this.baseText = baseText;
+            this.headText = headText;
+            this.baseContent = baseText.toString();
+            this.headContent = headText != null ? headText.toString() : null;
             this.scopeRanges = scopeRanges;
             this.localRanges = localRanges;
         }
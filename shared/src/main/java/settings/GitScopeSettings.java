@@ -44,6 +44,12 @@ public class GitScopeSettings implements PersistentStateComponent<GitScopeSettin
      */
     public boolean showDeletedFiles = false;
 
+    /**
+     * Memory budget in MB for cached base revision contents, shared by all projects.
+     * Default: 64
+     */
+    public int baseContentCacheMb = 64;
+
     public static GitScopeSettings getInstance() {
         return ApplicationManager.getApplication().getService(GitScopeSettings.class);
     }
@@ -91,4 +97,12 @@ public class GitScopeSettings implements PersistentStateComponent<GitScopeSettin
     public void setShowDeletedFiles(boolean showDeletedFiles) {
         this.showDeletedFiles = showDeletedFiles;
     }
+
+    public int getBaseContentCacheMb() {
+        return baseContentCacheMb;
+    }
+
+    public void setBaseContentCacheMb(int baseContentCacheMb) {
+        this.baseContentCacheMb = baseContentCacheMb;
+    }
 }
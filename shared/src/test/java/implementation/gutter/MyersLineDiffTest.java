@@ -0,0 +1,140 @@
+package implementation.gutter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MyersLineDiffTest {
+
+    @Test
+    public void identicalTextsHaveNoRanges() {
+        assertEquals(List.of(), diff("a\nb\nc", "a\nb\nc"));
+    }
+
+    @Test
+    public void modifiedLine() {
+        assertRanges(diff("a\nx\nc", "a\nb\nc"), "[1, 2) - [1, 2)");
+    }
+
+    @Test
+    public void insertedLine() {
+        assertRanges(diff("a\nb\nc", "a\nc"), "[1, 1) - [1, 2)");
+    }
+
+    @Test
+    public void deletedLine() {
+        assertRanges(diff("a\nc", "a\nb\nc"), "[1, 2) - [1, 1)");
+    }
+
+    @Test
+    public void separateBlocks() {
+        assertRanges(diff("x\nb\nc\nd\ny", "a\nb\nc\nd\ne"), "[0, 1) - [0, 1)", "[4, 5) - [4, 5)");
+    }
+
+    @Test
+    public void rangesOfWindowUseWholeTextCoordinates() {
+        LineIndexedText current = LineIndexedText.of("p\na\nx\nc\nq");
+        LineIndexedText vcs = LineIndexedText.of("r\ns\na\nb\nc\nt");
+        List<Range> ranges = MyersLineDiff.INSTANCE.compare(current, 1, 4, vcs, 2, 5, 10);
+        assertRanges(ranges, "[3, 4) - [2, 3)");
+    }
+
+    @Test
+    public void givesUpAboveMaxEdits() {
+        LineIndexedText current = LineIndexedText.of("1\n2\n3\n4");
+        LineIndexedText vcs = LineIndexedText.of("a\nb\nc\nd");
+        assertNull(MyersLineDiff.INSTANCE.compare(current, 0, 4, vcs, 0, 4, 7));
+        assertNotNull(MyersLineDiff.INSTANCE.compare(current, 0, 4, vcs, 0, 4, 8));
+    }
+
+    @Test
+    public void equalHashesOfDifferentLinesDoNotMatch() {
+        // "Aa" and "BB" have the same String-style hash
+        assertRanges(diff("x\nAa\ny", "x\nBB\ny"), "[1, 2) - [1, 2)");
+    }
+
+    @Test
+    public void randomTextsGetMinimalValidDiffs() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            String[] current = randomLines(random);
+            String[] vcs = randomLines(random);
+            LineIndexedText currentText = LineIndexedText.of(String.join("\n", current));
+            LineIndexedText vcsText = LineIndexedText.of(String.join("\n", vcs));
+            List<Range> ranges = MyersLineDiff.INSTANCE.compare(currentText, 0, current.length,
+                    vcsText, 0, vcs.length, current.length + vcs.length);
+            assertNotNull(ranges);
+            assertValid(current, vcs, ranges);
+            assertEquals("edits of " + String.join(",", current) + " against " + String.join(",", vcs),
+                    current.length + vcs.length - 2 * lcs(current, vcs), editCount(ranges));
+        }
+    }
+
+    private static List<Range> diff(String current, String vcs) {
+        LineIndexedText currentText = LineIndexedText.of(current);
+        LineIndexedText vcsText = LineIndexedText.of(vcs);
+        return MyersLineDiff.INSTANCE.compare(currentText, 0, currentText.getLineCount(),
+                vcsText, 0, vcsText.getLineCount(), 100);
+    }
+
+    private static void assertRanges(List<Range> ranges, String... expected) {
+        List<String> actual = new ArrayList<>();
+        for (Range range : ranges) {
+            actual.add(range.toString());
+        }
+        assertEquals(List.of(expected), actual);
+    }
+
+    // Ranges are sorted, disjoint, and the lines between them are equal on both sides
+    private static void assertValid(String[] current, String[] vcs, List<Range> ranges) {
+        int line = 0;
+        int vcsLine = 0;
+        for (Range range : ranges) {
+            assertTrue(range.getLine1() >= line && range.getVcsLine1() >= vcsLine);
+            assertEquals(range.getLine1() - line, range.getVcsLine1() - vcsLine);
+            assertTrue(range.hasLines() || range.hasVcsLines());
+            for (int i = 0; i < range.getLine1() - line; i++) {
+                assertEquals(vcs[vcsLine + i], current[line + i]);
+            }
+            line = range.getLine2();
+            vcsLine = range.getVcsLine2();
+        }
+        assertEquals(current.length - line, vcs.length - vcsLine);
+        for (int i = 0; i < current.length - line; i++) {
+            assertEquals(vcs[vcsLine + i], current[line + i]);
+        }
+    }
+
+    private static int editCount(List<Range> ranges) {
+        int count = 0;
+        for (Range range : ranges) {
+            count += (range.getLine2() - range.getLine1()) + (range.getVcsLine2() - range.getVcsLine1());
+        }
+        return count;
+    }
+
+    private static int lcs(String[] a, String[] b) {
+        int[][] length = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; i--) {
+            for (int j = b.length - 1; j >= 0; j--) {
+                length[i][j] = a[i].equals(b[j]) ? length[i + 1][j + 1] + 1 : Math.max(length[i + 1][j], length[i][j + 1]);
+            }
+        }
+        return length[0][0];
+    }
+
+    private static String[] randomLines(Random random) {
+        String[] lines = new String[1 + random.nextInt(12)];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = String.valueOf((char) ('a' + random.nextInt(4)));
+        }
+        return lines;
+    }
+}
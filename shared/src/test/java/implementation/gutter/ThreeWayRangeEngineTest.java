@@ -0,0 +1,71 @@
+package implementation.gutter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ThreeWayRangeEngineTest {
+
+    private static final LineIndexedText BASE = LineIndexedText.of("base");
+    private static final LineIndexedText HEAD = LineIndexedText.of("head");
+
+    @Test
+    public void scopeRangesStayWithoutLocalChanges() {
+        ThreeWayRangeEngine engine = engine(new Range(5, 7, 5, 6));
+        assertRanges(engine.toCurrentSpace(List.of()), "[5, 6) - [5, 7)");
+    }
+
+    @Test
+    public void localInsertionAboveShiftsScopeRange() {
+        ThreeWayRangeEngine engine = engine(new Range(5, 7, 5, 6));
+        assertRanges(engine.toCurrentSpace(List.of(new Range(1, 3, 1, 1))), "[5, 6) - [7, 9)");
+    }
+
+    @Test
+    public void localChangeCutsOverlappingScopeLines() {
+        ThreeWayRangeEngine engine = engine(new Range(2, 6, 2, 5));
+        assertRanges(engine.toCurrentSpace(List.of(new Range(4, 5, 4, 6))), "[2, 3) - [2, 4)");
+    }
+
+    @Test
+    public void scopeRangeInsideLocalChangeIsSuppressed() {
+        ThreeWayRangeEngine engine = engine(new Range(3, 4, 3, 4));
+        assertRanges(engine.toCurrentSpace(List.of(new Range(2, 6, 2, 5))));
+    }
+
+    @Test
+    public void scopeDeletionIsShiftedByLocalChangesAbove() {
+        ThreeWayRangeEngine engine = engine(new Range(4, 4, 4, 6));
+        assertRanges(engine.toCurrentSpace(List.of(new Range(0, 1, 0, 0))), "[4, 6) - [5, 5)");
+    }
+
+    @Test
+    public void scopeDeletionInsideLocalChangeIsSuppressed() {
+        ThreeWayRangeEngine engine = engine(new Range(4, 4, 4, 6));
+        assertRanges(engine.toCurrentSpace(List.of(new Range(3, 5, 3, 6))));
+    }
+
+    @Test
+    public void matchesByIdentity() {
+        ThreeWayRangeEngine engine = engine(new Range(0, 1, 0, 1));
+        assertTrue(engine.matches(BASE, HEAD));
+        assertFalse(engine.matches(LineIndexedText.of("base"), HEAD));
+    }
+
+    private static ThreeWayRangeEngine engine(Range... scopeRanges) {
+        return ThreeWayRangeEngine.withScopeRanges(BASE, HEAD, List.of(scopeRanges));
+    }
+
+    private static void assertRanges(List<Range> ranges, String... expected) {
+        List<String> actual = new ArrayList<>();
+        for (Range range : ranges) {
+            actual.add(range.toString());
+        }
+        assertEquals(List.of(expected), actual);
+    }
+}